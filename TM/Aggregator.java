@@ -0,0 +1,179 @@
+package TM;
+
+// Imports for data operations
+import java.util.Map;
+import java.util.EnumMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Aggregator
+// Time per name and stats per size over a list of window slots,
+// each window clipped to a time range. Large lists are split into shards
+// which are aggregated on the common fork/join pool and merged back in
+// slot order; every partial is a sum, min, max or bucket count, so the
+// result is the same as aggregating on one thread.
+// -Dtm.sequential=true keeps everything on the calling thread.
+class Aggregator{
+
+    // Lists shorter than this are not split
+    private static final int SHARD_MIN = 1 << 15;
+
+    private static final TASK_SIZE[] SIZES = TASK_SIZE.values();
+
+    private final TaskStore store;
+    private final long now;
+    private final long from;
+    private final long to;
+
+    // Only windows of this size, every size if null
+    private final TASK_SIZE size;
+
+    protected Aggregator(TaskStore store, long now, long from, long to, TASK_SIZE size){
+
+        this.store = store;
+        this.now = now;
+        this.from = from;
+        this.to = to;
+        this.size = size;
+    }
+
+    protected Result run(TaskStore.IntList slots){
+
+        int count = slots.size();
+        int parallelism = ForkJoinPool.getCommonPoolParallelism();
+
+        if (count < SHARD_MIN * 2 || parallelism < 2
+                || Boolean.getBoolean(Constants.SEQUENTIAL_PROPERTY)){
+
+            return aggregate(slots, 0, count);
+        }
+
+        // A few shards per core, so a slow one does not hold up the rest
+        int shard = Math.max(SHARD_MIN, count / (parallelism * 4));
+
+        return ForkJoinPool.commonPool().invoke(new Shard(slots, 0, count, shard));
+    }
+
+    private Result aggregate(TaskStore.IntList slots, int low, int high){
+
+        Result result = new Result(store.nameCount());
+
+        for (int i = low; i < high; i++){
+
+            int slot = slots.get(i);
+
+            if (store.isDeleted(slot)){
+                continue;
+            }
+
+            TASK_SIZE taskSize = store.getSize(slot);
+
+            if (size != null && taskSize != size){
+                continue;
+            }
+
+            long start = store.getStart(slot);
+            long end = store.isRunning(slot) ? now : store.getEnd(slot);
+
+            // Windows which start in the range, or reach into it
+            if (start >= to || (start < from && end <= from)){
+                continue;
+            }
+
+            long seconds = store.summaryTime(slot, now, from, to);
+            int id = store.getNameId(slot);
+
+            result.totals[id] += seconds;
+            result.windows[id]++;
+            result.sizes[taskSize.ordinal()].add(seconds);
+        }
+        return result;
+    }
+
+    // Half of a list of slots
+    private class Shard extends RecursiveTask<Result>{
+
+        private static final long serialVersionUID = 1L;
+
+        private final TaskStore.IntList slots;
+        private final int low;
+        private final int high;
+        private final int shard;
+
+        private Shard(TaskStore.IntList slots, int low, int high, int shard){
+
+            this.slots = slots;
+            this.low = low;
+            this.high = high;
+            this.shard = shard;
+        }
+
+        @Override
+        protected Result compute(){
+
+            if (high - low <= shard){
+
+                return aggregate(slots, low, high);
+            }
+
+            int mid = (low + high) >>> 1;
+
+            Shard first = new Shard(slots, low, mid, shard);
+            first.fork();
+            Result second = new Shard(slots, mid, high, shard).compute();
+
+            return first.join().merge(second);
+        }
+    }
+
+    // Seconds and windows per name id, stats per size
+    protected static class Result{
+
+        private final long[] totals;
+        private final int[] windows;
+        private final TaskStats.SizeStats[] sizes = new TaskStats.SizeStats[SIZES.length];
+
+        private Result(int names){
+
+            totals = new long[names];
+            windows = new int[names];
+
+            for (int i = 0; i < sizes.length; i++){
+
+                sizes[i] = new TaskStats.SizeStats();
+            }
+        }
+
+        private Result merge(Result other){
+
+            for (int id = 0; id < totals.length; id++){
+
+                totals[id] += other.totals[id];
+                windows[id] += other.windows[id];
+            }
+            for (int i = 0; i < sizes.length; i++){
+
+                sizes[i].merge(other.sizes[i]);
+            }
+            return this;
+        }
+
+        protected long getTotal(int id){ return totals[id]; }
+        protected int getWindows(int id){ return windows[id]; }
+
+        // Stats of the sizes S to XL
+        protected Map<TASK_SIZE, TaskStats.SizeStats> getSizes(){
+
+            Map<TASK_SIZE, TaskStats.SizeStats> result = new EnumMap<>(TASK_SIZE.class);
+
+            for (TASK_SIZE taskSize : SIZES){
+
+                if (taskSize != TASK_SIZE.UNDEFINED){
+
+                    result.put(taskSize, sizes[taskSize.ordinal()]);
+                }
+            }
+            return result;
+        }
+    }
+}
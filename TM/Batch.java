@@ -0,0 +1,178 @@
+package TM;
+
+// Imports for files R/W
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+// Imports for data operations
+import java.util.List;
+import java.util.ArrayList;
+
+// Batch
+// Runs a script of commands, one per line in the same syntax as the
+// command line, against one Logger. The log is written once at the end,
+// or every N commands, instead of once per command.
+// A failing line is reported and the batch goes on.
+class Batch{
+
+    // Run commands from a file, or standard input for "-"
+    // flushEvery <= 0 only writes at the end
+    protected static void run(String source, int flushEvery) throws IOException{
+
+        Logger logger = Logger.getInstance();
+
+        int done = 0;
+        int failed = 0;
+        int unflushed = 0;
+
+        // A daemon group stays deferred after the batch
+        boolean wasDeferred = logger.isDeferred();
+        logger.setDeferred(true);
+
+        try (BufferedReader reader = source.equals(Constants.STDIN)
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(Paths.get(source), StandardCharsets.UTF_8)){
+
+            String line;
+            int number = 0;
+
+            while ((line = reader.readLine()) != null){
+
+                number++;
+
+                try{
+
+                    String[] args = tokenize(line);
+
+                    // Blank lines and comments
+                    if (args.length == 0 || args[0].startsWith("#")){
+                        continue;
+                    }
+
+                    String command = args[0].toLowerCase();
+
+                    if (command.equals(Constants.BATCH) || command.equals(Constants.DAEMON)
+                            || Watch.isWatch(args)){
+
+                        throw new IllegalArgumentException(command
+                                                + ": " + Constants.ERR_BATCH);
+                    }
+
+                    TM.run(args);
+                    done++;
+
+                    if (flushEvery > 0 && ++unflushed >= flushEvery){
+
+                        logger.flush();
+                        unflushed = 0;
+                    }
+                }catch(Exception ex){
+
+                    failed++;
+                    System.out.println("Line " + number + ": " + ex.getMessage());
+                }
+            }
+        }finally{
+
+            logger.flush();
+            logger.setDeferred(wasDeferred);
+        }
+
+        System.out.println("Batch: " + done + " commands, " + failed + " failed");
+    }
+
+    // Arguments for the daemon, which has its own working directory
+    // and no access to this process's standard input, so the script
+    // path is made absolute and standard input is copied to a temp file,
+    // the path of an import is made absolute too
+    protected static String[] forDaemon(String[] args) throws IOException{
+
+        if (args.length == 2 && args[0].equalsIgnoreCase(Constants.IMPORT)){
+
+            return new String[]{args[0], Paths.get(args[1]).toAbsolutePath().toString()};
+        }
+
+        if (args.length < 2 || !args[0].equalsIgnoreCase(Constants.BATCH)){
+
+            return args;
+        }
+
+        String[] result = args.clone();
+
+        if (args[1].equals(Constants.STDIN)){
+
+            Path script = Files.createTempFile("TM_batch", ".txt");
+            script.toFile().deleteOnExit();
+            Files.copy(System.in, script, StandardCopyOption.REPLACE_EXISTING);
+            result[1] = script.toString();
+        }else{
+            result[1] = Paths.get(args[1]).toAbsolutePath().toString();
+        }
+        return result;
+    }
+
+    // Split a line like a shell would:
+    // whitespace separated, quotes group words, backslash escapes
+    protected static String[] tokenize(String line){
+
+        List<String> args = new ArrayList<>();
+        StringBuilder arg = new StringBuilder();
+
+        boolean inArg = false;
+        char quote = 0;
+
+        for (int i = 0; i < line.length(); i++){
+
+            char c = line.charAt(i);
+
+            if (quote != 0){
+
+                if (c == quote){
+
+                    quote = 0;
+                }else if (c == '\\' && quote == '"' && i + 1 < line.length()){
+
+                    arg.append(line.charAt(++i));
+                }else{
+                    arg.append(c);
+                }
+            }else if (c == '"' || c == '\''){
+
+                quote = c;
+                inArg = true;
+            }else if (c == '\\' && i + 1 < line.length()){
+
+                arg.append(line.charAt(++i));
+                inArg = true;
+            }else if (Character.isWhitespace(c)){
+
+                if (inArg){
+
+                    args.add(arg.toString());
+                    arg.setLength(0);
+                    inArg = false;
+                }
+            }else{
+                arg.append(c);
+                inArg = true;
+            }
+        }
+
+        if (quote != 0){
+
+            throw new IllegalArgumentException("Unterminated quote: " + line);
+        }
+
+        if (inArg){
+
+            args.add(arg.toString());
+        }
+        return args.toArray(new String[0]);
+    }
+}
@@ -0,0 +1,248 @@
+package TM;
+
+// Imports for files R/W
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+// Imports for data operations
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
+
+// Binary snapshot
+// Same content as the text log, for logs with many windows:
+// every name, description and operation is stored once in a dictionary
+// and every window is a fixed-width record of dictionary ids,
+// the TASK_SIZE ordinal and epoch seconds.
+// The file is memory mapped, strings are only decoded when they are used,
+// so status only touches the header, the running records and their names.
+// Layout, big-endian:
+//   header:     magic, version, checkpoint, counts of strings, records,
+//               running records and operations, dictionary bytes
+//   dictionary: end offset of every string, then the UTF-8 bytes
+//   records:    start, end, name id, description id, size, 3 bytes padding
+//   running:    record index of every running window, oldest first
+//   operations: string id of every Operation Log line
+class BinarySnapshot{
+
+    private static final int MAGIC = 0x544D4231;
+    private static final int VERSION = 1;
+
+    private static final int HEADER = 40;
+    private static final int RECORD = 28;
+
+    private static final TASK_SIZE[] SIZES = TASK_SIZE.values();
+
+    private final MappedByteBuffer buffer;
+
+    private final long checkpoint;
+    private final int records;
+    private final int running;
+    private final int operations;
+
+    // Section offsets
+    private final int endsAt;
+    private final int dataAt;
+    private final int recordsAt;
+    private final int runningAt;
+    private final int operationsAt;
+
+    // Decoded strings by id
+    private final String[] strings;
+
+    protected BinarySnapshot(File file) throws IOException{
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+
+            if (channel.size() < HEADER || channel.size() > Integer.MAX_VALUE){
+
+                throw new RuntimeException("Invalid binary log file");
+            }
+
+            // Pages are only read once they are touched
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION){
+
+            throw new RuntimeException("Invalid binary log file");
+        }
+
+        checkpoint = buffer.getLong(8);
+        strings = new String[buffer.getInt(16)];
+        records = buffer.getInt(20);
+        running = buffer.getInt(24);
+        operations = buffer.getInt(28);
+
+        endsAt = HEADER;
+        dataAt = endsAt + 4 * strings.length;
+        recordsAt = dataAt + buffer.getInt(32);
+        runningAt = recordsAt + RECORD * records;
+        operationsAt = runningAt + 4 * running;
+
+        if (operationsAt + 4L * operations != buffer.capacity()){
+
+            throw new RuntimeException("Invalid binary log file");
+        }
+    }
+
+    protected long getCheckpoint(){ return checkpoint; }
+
+    protected int records(){ return records; }
+
+    // Every window, in the order of the Task Summary
+    protected void tasks(TaskStore store){
+
+        for (int i = 0; i < records; i++){
+
+            int at = recordsAt + RECORD * i;
+
+            store.add(string(buffer.getInt(at + 16)), SIZES[buffer.get(at + 24)],
+                        buffer.getLong(at), buffer.getLong(at + 8),
+                        string(buffer.getInt(at + 20)));
+        }
+    }
+
+    // Running windows without reading any other record
+    protected void running(Status status){
+
+        for (int i = 0; i < running; i++){
+
+            int at = recordsAt + RECORD * buffer.getInt(runningAt + 4 * i);
+
+            status.add(string(buffer.getInt(at + 16)), buffer.getLong(at));
+        }
+    }
+
+    protected void operations(List<String> target){
+
+        for (int i = 0; i < operations; i++){
+
+            target.add(string(buffer.getInt(operationsAt + 4 * i)));
+        }
+    }
+
+    private String string(int id){
+
+        if (strings[id] == null){
+
+            int begin = id == 0 ? 0 : buffer.getInt(endsAt + 4 * (id - 1));
+            byte[] bytes = new byte[buffer.getInt(endsAt + 4 * id) - begin];
+
+            buffer.get(dataAt + begin, bytes);
+            strings[id] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return strings[id];
+    }
+
+    // Write the windows of a store which aren't deleted,
+    // and the Operation Log lines
+    protected static void write(File target, long checkpoint,
+                                    List<String> operationLog, TaskStore store) throws IOException{
+
+        Dictionary dictionary = new Dictionary();
+
+        // Record index of every slot, for the running section
+        int[] recordOf = new int[store.slots()];
+        int records = 0;
+
+        for (int slot = 0; slot < store.slots(); slot++){
+
+            if (store.isDeleted(slot)){
+                continue;
+            }
+            dictionary.id(store.getName(slot));
+            dictionary.id(store.getDes(slot));
+            recordOf[slot] = records++;
+        }
+        for (String line : operationLog){
+
+            dictionary.id(line);
+        }
+
+        int running = store.running().size();
+        long size = HEADER + 4L * dictionary.bytes.size() + dictionary.length
+                        + (long) RECORD * records + 4L * running + 4L * operationLog.size();
+
+        if (size > Integer.MAX_VALUE){
+
+            throw new RuntimeException("Log is too large for a binary snapshot");
+        }
+
+        try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(target), 1 << 16))){
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(checkpoint);
+            out.writeInt(dictionary.bytes.size());
+            out.writeInt(records);
+            out.writeInt(running);
+            out.writeInt(operationLog.size());
+            out.writeInt((int) dictionary.length);
+            out.writeInt(0);
+
+            int end = 0;
+            for (byte[] bytes : dictionary.bytes){
+
+                end += bytes.length;
+                out.writeInt(end);
+            }
+            for (byte[] bytes : dictionary.bytes){
+
+                out.write(bytes);
+            }
+
+            for (int slot = 0; slot < store.slots(); slot++){
+
+                if (store.isDeleted(slot)){
+                    continue;
+                }
+                out.writeLong(store.getStart(slot));
+                out.writeLong(store.getEnd(slot));
+                out.writeInt(dictionary.ids.get(store.getName(slot)));
+                out.writeInt(dictionary.ids.get(store.getDes(slot)));
+                out.writeByte(store.getSize(slot).ordinal());
+                out.write(new byte[3]);
+            }
+
+            for (int slot : store.running()){
+
+                out.writeInt(recordOf[slot]);
+            }
+            for (String line : operationLog){
+
+                out.writeInt(dictionary.ids.get(line));
+            }
+        }
+        Perf.written(target.length());
+    }
+
+    // Strings by id while writing
+    private static class Dictionary{
+
+        private Map<String, Integer> ids = new HashMap<>();
+        private List<byte[]> bytes = new ArrayList<>();
+        private long length = 0;
+
+        private void id(String value){
+
+            if (!ids.containsKey(value)){
+
+                byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+
+                ids.put(value, bytes.size());
+                bytes.add(encoded);
+                length += encoded.length;
+            }
+        }
+    }
+}
@@ -0,0 +1,450 @@
+package TM;
+
+// Imports for files R/W
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+// Imports for the local socket
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+
+// Imports for data operations
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+// Daemon
+// Keeps the log loaded and runs commands sent over a local socket,
+// so a command does not pay JVM startup and a full readFile.
+// Clients which connect while a group is being written queue up and are
+// run as the next group: one lock, one flush, then every client gets
+// its output. A burst of commands costs one write instead of one each.
+// If another process changed the log in between, it is read again first,
+// and a group which couldn't be written is dropped by reading it again.
+// The commands of a group are read side by side with a deadline, a client
+// which stalls is dropped instead of holding up the others.
+class Daemon{
+
+    // Socket next to the log file
+    private static final Path SOCKET = Paths.get(Constants.SOCKET_FNAME);
+
+    // Time a group of clients has to send its commands, in milliseconds
+    private static final long READ_TIMEOUT = 2000;
+
+    // Longest command a client may send
+    private static final int MAX_REQUEST = 1 << 20;
+
+    // Load the log and serve commands until "daemon stop"
+    @SuppressWarnings("try")
+    protected static void serve() throws IOException, InterruptedException{
+
+        // Exclusive, the daemon writes with what it loads here
+        try (LogLock lock = LogLock.exclusive()){
+
+            Logger.getInstance();
+        }
+
+        if (forward(null)){
+
+            throw new RuntimeException(Constants.ERR_DAEMON_RUNNING);
+        }
+
+        // Socket left behind by a daemon which didn't shut down
+        Files.deleteIfExists(SOCKET);
+
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)){
+
+            server.bind(UnixDomainSocketAddress.of(SOCKET));
+            Runtime.getRuntime().addShutdownHook(new Thread(Daemon::removeSocket));
+
+            System.out.println("Daemon listening on " + SOCKET);
+
+            // Clients are accepted while a group runs
+            BlockingQueue<SocketChannel> queue = new LinkedBlockingQueue<>();
+            Thread acceptor = new Thread(() -> accept(server, queue), "TM-accept");
+            acceptor.setDaemon(true);
+            acceptor.start();
+
+            boolean running = true;
+
+            while (running){
+
+                List<SocketChannel> group = new ArrayList<>();
+                group.add(queue.take());
+                queue.drainTo(group);
+
+                running = commit(group);
+            }
+        }finally{
+
+            removeSocket();
+        }
+    }
+
+    private static void accept(ServerSocketChannel server, BlockingQueue<SocketChannel> queue){
+
+        while (server.isOpen()){
+
+            try{
+
+                queue.add(server.accept());
+
+            }catch(IOException ex){
+
+                // Closed when the daemon stops
+                return;
+            }
+        }
+    }
+
+    // Send a command to the daemon and print its output
+    // false if no daemon is running, a null command only checks that
+    protected static boolean forward(String[] args) throws IOException{
+
+        return forward(SOCKET, args, System.out);
+    }
+
+    // Same for the daemon of another directory, output goes to out
+    protected static boolean forward(Path socket, String[] args, OutputStream out) 
+                                                                throws IOException{
+
+        if (!Files.exists(socket)){
+
+            return false;
+        }
+
+        SocketChannel channel;
+
+        try {
+
+            channel = SocketChannel.open(UnixDomainSocketAddress.of(socket));
+
+        } catch (IOException e) {
+
+            // Stale socket
+            return false;
+        }
+
+        try (channel){
+
+            DataOutputStream request = new DataOutputStream(Channels.newOutputStream(channel));
+            String[] command = args == null ? new String[0] : Batch.forDaemon(args);
+
+            request.writeInt(command.length);
+            for (String arg : command){
+
+                request.writeUTF(arg);
+            }
+            request.flush();
+            channel.shutdownOutput();
+
+            InputStream in = Channels.newInputStream(channel);
+            in.transferTo(out);
+            out.flush();
+        }
+        return true;
+    }
+
+    // Run a group of client commands with one write of the log
+    // false once the daemon should stop
+    @SuppressWarnings("try")
+    private static boolean commit(List<SocketChannel> group) throws IOException{
+
+        List<SocketChannel> clients = new ArrayList<>();
+        List<String[]> commands = new ArrayList<>();
+        Map<SocketChannel, String[]> requests = read(group);
+
+        for (SocketChannel client : group){
+
+            String[] args = requests.get(client);
+
+            if (args == null){
+                continue;
+            }
+
+            // Ping from forward(null)
+            if (args.length == 0){
+
+                client.close();
+                continue;
+            }
+            clients.add(client);
+            commands.add(args);
+        }
+
+        if (clients.isEmpty()){
+
+            return true;
+        }
+
+        List<ByteArrayOutputStream> outputs = new ArrayList<>();
+        boolean running = true;
+
+        try (LogLock lock = LogLock.exclusive()){
+
+            Logger logger;
+
+            try{
+
+                logger = Logger.refresh();
+
+            }catch(IOException | RuntimeException ex){
+
+                // The log can't be read now, only daemon commands run and
+                // the next group reads it again
+                for (String[] args : commands){
+
+                    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                    outputs.add(buffer);
+
+                    if (args[0].equalsIgnoreCase(Constants.DAEMON)){
+
+                        running &= execute(args, new PrintStream(buffer, true, 
+                                                                    StandardCharsets.UTF_8));
+                    }else{
+
+                        buffer.write((ex.getMessage() + System.lineSeparator())
+                                        .getBytes(StandardCharsets.UTF_8));
+                    }
+                }
+                logger = null;
+            }
+
+            if (logger != null){
+
+                logger.setDeferred(true);
+
+                try{
+
+                    for (String[] args : commands){
+
+                        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                        outputs.add(buffer);
+
+                        running &= execute(args, new PrintStream(buffer, true, 
+                                                                    StandardCharsets.UTF_8));
+                    }
+
+                    logger.flush();
+
+                }catch(IOException | RuntimeException ex){
+
+                    // Nothing of this group was written
+                    for (ByteArrayOutputStream buffer : outputs){
+
+                        buffer.write((ex.getMessage() + System.lineSeparator())
+                                        .getBytes(StandardCharsets.UTF_8));
+                    }
+                    logger.setDeferred(false);
+
+                    // Its changes are only in memory, the log is read again
+                    // so the next group doesn't write them after all
+                    try{
+
+                        Logger.reload();
+
+                    }catch(IOException | RuntimeException reloadEx){
+
+                        System.out.println(reloadEx.getMessage());
+                    }
+                }finally{
+
+                    logger.setDeferred(false);
+                }
+            }
+        }
+
+        for (int i = 0; i < clients.size(); i++){
+
+            try (SocketChannel client = clients.get(i)){
+
+                client.write(ByteBuffer.wrap(outputs.get(i).toByteArray()));
+
+            }catch(IOException ex){
+
+                System.out.println(ex.getMessage());
+            }
+        }
+        return running;
+    }
+
+    // Commands of a group, a client has sent its command once it shut
+    // its output. Clients which went away, send too much or haven't
+    // finished by the deadline are closed and left out.
+    private static Map<SocketChannel, String[]> read(List<SocketChannel> group)
+                                                        throws IOException{
+
+        Map<SocketChannel, String[]> result = new HashMap<>();
+        Map<SocketChannel, ByteArrayOutputStream> requests = new HashMap<>();
+        long deadline = System.currentTimeMillis() + READ_TIMEOUT;
+
+        try (Selector selector = Selector.open()){
+
+            for (SocketChannel client : group){
+
+                client.configureBlocking(false);
+                client.register(selector, SelectionKey.OP_READ);
+                requests.put(client, new ByteArrayOutputStream());
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+
+            // Cancelled keys stay in the selector until the next select
+            int pending = group.size();
+
+            while (pending > 0){
+
+                long left = deadline - System.currentTimeMillis();
+
+                if (left <= 0){
+                    break;
+                }
+                selector.select(left);
+
+                for (SelectionKey key : selector.selectedKeys()){
+
+                    SocketChannel client = (SocketChannel) key.channel();
+                    ByteArrayOutputStream request = requests.get(client);
+
+                    try{
+
+                        buffer.clear();
+                        int read = client.read(buffer);
+
+                        if (read < 0){
+
+                            key.cancel();
+                            pending--;
+                            result.put(client, parse(request.toByteArray()));
+                            continue;
+                        }
+                        request.write(buffer.array(), 0, read);
+
+                        if (request.size() > MAX_REQUEST){
+
+                            throw new IOException("Dropped a client with a command over "
+                                                    + MAX_REQUEST + " bytes");
+                        }
+
+                    }catch(IOException ex){
+
+                        // A client which went away doesn't stop the daemon
+                        System.out.println(ex.getMessage());
+
+                        if (key.isValid()){
+
+                            pending--;
+                        }
+                        client.close();
+                    }
+                }
+                selector.selectedKeys().clear();
+            }
+
+            for (SelectionKey key : new ArrayList<>(selector.keys())){
+
+                if (key.isValid()){
+
+                    System.out.println("Dropped a client which didn't send its command in time");
+                    key.channel().close();
+                }
+            }
+        }
+
+        // Output is written back in one blocking write
+        for (SocketChannel client : result.keySet()){
+
+            client.configureBlocking(true);
+        }
+        return result;
+    }
+
+    private static String[] parse(byte[] request) throws IOException{
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(request));
+
+        try{
+
+            int count = in.readInt();
+
+            if (count < 0 || count > request.length){
+
+                throw new IOException("Dropped a client with an invalid command");
+            }
+
+            String[] args = new String[count];
+            for (int i = 0; i < args.length; i++){
+
+                args[i] = in.readUTF();
+            }
+            return args;
+
+        }catch(EOFException ex){
+
+            throw new IOException("Dropped a client with an incomplete command");
+        }
+    }
+
+    // Run a command with its output going to out, like main would print it
+    private static boolean execute(String[] args, PrintStream out){
+
+        PrintStream console = System.out;
+        System.setOut(out);
+
+        try{
+
+            if (args[0].equalsIgnoreCase(Constants.DAEMON)){
+
+                if (args.length == 2 && args[1].equalsIgnoreCase(Constants.STOP)){
+
+                    System.out.println("Daemon stopped");
+                    return false;
+                }
+                throw new RuntimeException(Constants.ERR_DAEMON_RUNNING);
+            }
+
+            TM.run(args);
+
+        }catch(Exception ex){
+
+            System.out.println(ex.getMessage());
+        }finally{
+
+            System.out.flush();
+            System.setOut(console);
+        }
+        return true;
+    }
+
+    private static void removeSocket(){
+
+        try {
+
+            Files.deleteIfExists(SOCKET);
+
+        } catch (IOException e) {
+
+            // Nothing left to clean up
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package TM;
+
+// Imports for files R/W
+import java.io.IOException;
+
+// Export
+// Every time window, then the time spent per name, as CSV or JSON.
+// Rows go straight from the TaskStore columns into a Renderer,
+// nothing but the current row is kept in memory.
+class Export{
+
+    private static final String CSV_HEADER = "record,name,size,start,end,description,seconds";
+
+    private final TaskStore store;
+    private final Renderer out;
+    private final long now;
+
+    protected Export(TaskStore store, Renderer out, long now){
+
+        this.store = store;
+        this.out = out;
+        this.now = now;
+    }
+
+    // record,name,size,start,end,description,seconds
+    // "window" rows have every column, "total" rows only name and seconds.
+    // A running window has an empty end.
+    protected void csv() throws IOException{
+
+        out.text(CSV_HEADER).endLine();
+
+        for (int slot = 0; slot < store.slots(); slot++){
+
+            if (store.isDeleted(slot)){
+                continue;
+            }
+
+            out.text("window,");
+            csvValue(store.getName(slot));
+            out.text(',').text(store.getSize(slot).name()).text(',');
+            out.stamp(store.getStart(slot)).text(',');
+
+            if (!store.isRunning(slot)){
+
+                out.stamp(store.getEnd(slot));
+            }
+            out.text(',');
+            csvValue(store.getDes(slot));
+            out.text(',').text(store.summaryTime(slot, now)).endLine();
+        }
+
+        for (String name : store.names()){
+
+            out.text("total,");
+            csvValue(name);
+            out.text(",,,,,").text(total(name)).endLine();
+        }
+    }
+
+    // {"windows":[...],"totals":[...]}, one element per line.
+    // A running window has a null end.
+    protected void json() throws IOException{
+
+        out.text("{\"windows\":[").endLine();
+
+        boolean first = true;
+
+        for (int slot = 0; slot < store.slots(); slot++){
+
+            if (store.isDeleted(slot)){
+                continue;
+            }
+
+            if (!first){
+
+                out.text(',').endLine();
+            }
+            first = false;
+
+            out.text("{\"name\":");
+            jsonValue(store.getName(slot));
+            out.text(",\"size\":\"").text(store.getSize(slot).name());
+            out.text("\",\"start\":\"").stamp(store.getStart(slot));
+
+            if (store.isRunning(slot)){
+
+                out.text("\",\"end\":null");
+            }else{
+                out.text("\",\"end\":\"").stamp(store.getEnd(slot)).text('"');
+            }
+            out.text(",\"description\":");
+            jsonValue(store.getDes(slot));
+            out.text(",\"seconds\":").text(store.summaryTime(slot, now)).text('}');
+        }
+        if (!first){
+
+            out.endLine();
+        }
+
+        out.text("],").endLine();
+        out.text("\"totals\":[").endLine();
+
+        first = true;
+
+        for (String name : store.names()){
+
+            if (!first){
+
+                out.text(',').endLine();
+            }
+            first = false;
+
+            out.text("{\"name\":");
+            jsonValue(name);
+            out.text(",\"seconds\":").text(total(name)).text('}');
+        }
+        if (!first){
+
+            out.endLine();
+        }
+        out.text("]}").endLine();
+    }
+
+    // Seconds spent on a name, including its running window
+    private long total(String name){
+
+        long time = store.getStats().getTotal(name);
+        int latest = store.find(name);
+
+        if (store.isRunning(latest)){
+
+            time += store.summaryTime(latest, now);
+        }
+        return time;
+    }
+
+    // Quoted when it has a comma, quote or line break
+    private void csvValue(String value){
+
+        boolean quote = false;
+
+        for (int i = 0; i < value.length() && !quote; i++){
+
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+
+        if (!quote){
+
+            out.text(value);
+            return;
+        }
+
+        out.text('"');
+        for (int i = 0; i < value.length(); i++){
+
+            char c = value.charAt(i);
+
+            if (c == '"'){
+
+                out.text('"');
+            }
+            out.text(c);
+        }
+        out.text('"');
+    }
+
+    private void jsonValue(String value){
+
+        out.text('"');
+        for (int i = 0; i < value.length(); i++){
+
+            char c = value.charAt(i);
+
+            switch (c){
+
+                case '"':
+                    out.text("\\\"");
+                    break;
+                case '\\':
+                    out.text("\\\\");
+                    break;
+                case '\n':
+                    out.text("\\n");
+                    break;
+                case '\r':
+                    out.text("\\r");
+                    break;
+                case '\t':
+                    out.text("\\t");
+                    break;
+                default:
+                    if (c < 0x20){
+
+                        out.text(String.format("\\u%04x", (int) c));
+                    }else{
+                        out.text(c);
+                    }
+            }
+        }
+        out.text('"');
+    }
+}
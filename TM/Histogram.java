@@ -0,0 +1,116 @@
+package TM;
+
+// Imports for data operations
+import java.util.Arrays;
+
+// Histogram
+// Log-bucketed counts of durations in seconds, HDR style:
+// values below 128 get a bucket each, larger values keep their top
+// 7 significant bits, so any quantile is within 1/64 of the real value.
+// The bucket array has a fixed size no matter how many values are added.
+class Histogram{
+
+    // Significant bits kept above the exact range
+    private static final int SUB_BITS = 6;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+
+    // Values below this get an exact bucket
+    private static final int EXACT = SUB_COUNT * 2;
+
+    private static final int BUCKETS = EXACT + (63 - SUB_BITS) * SUB_COUNT;
+
+    private long[] counts = new long[BUCKETS];
+    private long total = 0;
+
+    protected Histogram(){}
+
+    protected Histogram(Histogram other){
+
+        counts = Arrays.copyOf(other.counts, BUCKETS);
+        total = other.total;
+    }
+
+    protected void add(long seconds){
+
+        counts[index(seconds)]++;
+        total++;
+    }
+
+    protected void remove(long seconds){
+
+        int index = index(seconds);
+
+        if (counts[index] > 0){
+
+            counts[index]--;
+            total--;
+        }
+    }
+
+    protected void merge(Histogram other){
+
+        for (int i = 0; i < BUCKETS; i++){
+
+            counts[i] += other.counts[i];
+        }
+        total += other.total;
+    }
+
+    protected long getCount(){ return total; }
+
+    // Value at a quantile between 0 and 1, -1 if empty
+    protected long quantile(double q){
+
+        if (total == 0){
+
+            return -1;
+        }
+
+        // Rank of the value, 1 based
+        long rank = Math.max(1, (long) Math.ceil(q * total));
+        long seen = 0;
+
+        for (int i = 0; i < BUCKETS; i++){
+
+            seen += counts[i];
+
+            if (seen >= rank){
+
+                return middle(i);
+            }
+        }
+        return middle(BUCKETS - 1);
+    }
+
+    private static int index(long seconds){
+
+        long value = Math.max(0, seconds);
+
+        if (value < EXACT){
+
+            return (int) value;
+        }
+
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        int mantissa = (int) (value >>> shift);
+
+        return EXACT + (shift - 1) * SUB_COUNT + (mantissa - SUB_COUNT);
+    }
+
+    // Middle value of a bucket
+    private static long middle(int index){
+
+        if (index < EXACT){
+
+            return index;
+        }
+
+        int shift = (index - EXACT) / SUB_COUNT + 1;
+        long mantissa = (index - EXACT) % SUB_COUNT + SUB_COUNT;
+
+        long low = mantissa << shift;
+        long high = ((mantissa + 1) << shift) - 1;
+
+        return low + (high - low) / 2;
+    }
+}
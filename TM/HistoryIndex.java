@@ -0,0 +1,590 @@
+package TM;
+
+// Imports for files R/W
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPInputStream;
+
+// Imports for data operations
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+// History index
+// Sidecar TM_log.idx with the byte offset of every Operation Log line and
+// Task Summary row per name, so history seeks to a name's records.
+// Offsets point into sources, oldest first: the segments, the text log
+// and the journal. Only a source which changed since the index was written
+// is scanned again, rolled segments never change. Once history built the
+// index, every text snapshot brings it up to date with the offsets it was
+// written with. Journal records and binary snapshots leave it as it is,
+// the next history scans the sources which changed.
+// History includes the lines of the names a task had, see Renames.
+class HistoryIndex{
+
+    private final File log;
+    private final File index;
+    private final File renames;
+    private final File journal;
+    private final boolean binary;
+
+    // Task Summary rows are in the shards, not in the log
+    private final boolean sharded;
+
+    // Current sources, oldest first
+    private final List<Source> sources = new ArrayList<>();
+
+    protected HistoryIndex(File log) throws IOException{
+
+        File dir = log.getAbsoluteFile().getParentFile();
+
+        this.log = log;
+        this.index = new File(dir, Constants.INDEX_FNAME);
+        this.renames = new File(dir, Constants.RENAMES_FNAME);
+        this.journal = new File(dir, Constants.JOURNAL_FNAME);
+        this.binary = log.getName().endsWith(Constants.BINARY_EXT);
+        this.sharded = new File(dir, Constants.SHARD_DIR).isDirectory();
+
+        File segments = new File(dir, Constants.SEGMENT_DIR);
+        OperationHistory history = segments.isDirectory()
+                                    ? new OperationHistory(segments, log) : null;
+
+        // A compact which stopped before its snapshot left the log as it was
+        boolean segmented = history != null && !history.isUndone();
+
+        if (segmented){
+
+            for (Path segment : history.segments()){
+
+                sources.add(new Source(segment.toFile(), Source.SEGMENT));
+            }
+            if (Files.exists(history.getActive())){
+
+                sources.add(new Source(history.getActive().toFile(), Source.SEGMENT));
+            }
+        }
+
+        if (!binary && log.exists()){
+
+            sources.add(new Source(log, Source.LOG));
+        }
+
+        // With segments the journal only repeats their lines
+        if (!binary && !segmented && journal.exists()){
+
+            sources.add(new Source(journal, Source.JOURNAL));
+        }
+    }
+
+    // Whether history built an index next to the log
+    protected static boolean exists(File log){
+
+        return new File(log.getAbsoluteFile().getParentFile(), Constants.INDEX_FNAME).exists();
+    }
+
+    // Bring the index up to date after a write, if history ever built one,
+    // written has the offsets of a text log which was just written
+    protected static void update(File log, Map<String, IndexFile.Postings> written)
+                                    throws IOException{
+
+        if (exists(log)){
+
+            new HistoryIndex(log).rebuild(written);
+        }
+    }
+
+    // Operation Log line of a text log being written, at offset
+    protected static void operation(Map<String, IndexFile.Postings> written,
+                                        String line, long offset){
+
+        String name = line.substring(Constants.PRINT_GAP,
+                        Math.min(line.length(), 2 * Constants.PRINT_GAP)).trim();
+
+        written.computeIfAbsent(name, k -> new IndexFile.Postings()).operations.add(offset);
+    }
+
+    // Task Summary row of a text log being written, at offset
+    protected static void row(Map<String, IndexFile.Postings> written, String name, long offset){
+
+        written.computeIfAbsent(name, k -> new IndexFile.Postings()).rows.add(offset);
+    }
+
+    // Operation Log lines and Task Summary rows of a name, the last
+    // limit of each. Anything which is only in the binary snapshot or the
+    // shards, or changed by journal records, comes from the loaded log.
+    protected void print(String name, int limit, Loaded loaded) throws IOException{
+
+        Map<String, Integer> names = Renames.names(renames, name);
+
+        // A binary log without segments has nothing to index
+        Map<String, IndexFile.Postings> postings = binary && !hasSegments() 
+                                            ? new HashMap<>() : lookup(names.keySet());
+
+        List<String> operations;
+        List<String> rows;
+
+        if (binary && !hasSegments()){
+
+            operations = loaded.get().operations(names);
+        }else{
+
+            operations = operations(names, postings);
+        }
+
+        if (binary || sharded || journalTouches(names)){
+
+            rows = loaded.get().rows(name);
+        }else{
+
+            IndexFile.Postings own = postings.get(name);
+            rows = own == null ? new ArrayList<>() : read(last(own.rows, limit));
+        }
+
+        if (operations.isEmpty() && rows.isEmpty()){
+
+            throw new RuntimeException("Couldn't find " + name);
+        }
+
+        Renderer out = Renderer.console();
+
+        out.text(Constants.OP_LOG).endLine();
+        for (String line : last(operations, limit)){
+
+            out.text(line).endLine();
+        }
+        out.endLine();
+        out.text(Constants.TASK_SUMMARY).endLine();
+        out.text(Constants.LABEL).endLine();
+        for (String line : last(rows, limit)){
+
+            out.text(line).endLine();
+        }
+        out.flush();
+    }
+
+    private List<String> operations(Map<String, Integer> names,
+                                        Map<String, IndexFile.Postings> postings) throws IOException{
+
+        IndexFile.LongList candidates = new IndexFile.LongList();
+
+        for (IndexFile.Postings entry : postings.values()){
+
+            candidates.addAll(entry.operations);
+        }
+        candidates.sort();
+
+        return Renames.filter(read(candidates), names);
+    }
+
+    // Whether a journal record since the snapshot changed windows of the names,
+    // with segments too, where the journal isn't a source
+    private boolean journalTouches(Map<String, Integer> names) throws IOException{
+
+        if (!journal.exists()){
+
+            return false;
+        }
+
+        for (String[] record : new Journal(journal).read(logCheckpoint())){
+
+            if (names.containsKey(record[2])
+                    || (record[1].equals(Constants.RENAME) && names.containsKey(record[3]))){
+
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean hasSegments(){
+
+        return !sources.isEmpty() && sources.get(0).type == Source.SEGMENT;
+    }
+
+    // Postings of the names, from the index if every source is unchanged
+    @SuppressWarnings("try")
+    private Map<String, IndexFile.Postings> lookup(Iterable<String> names) throws IOException{
+
+        Map<String, IndexFile.Postings> result;
+
+        try (Perf.Phase phase = Perf.phase(Perf.READ)){
+
+            result = IndexFile.lookup(index, keys(), names);
+        }
+
+        if (result != null){
+
+            return result;
+        }
+
+        Map<String, IndexFile.Postings> all = rebuild(null);
+        result = new HashMap<>();
+
+        for (String name : names){
+
+            if (all.containsKey(name)){
+
+                result.put(name, all.get(name));
+            }
+        }
+        return result;
+    }
+
+    private List<String> keys(){
+
+        List<String> result = new ArrayList<>();
+
+        for (Source source : sources){
+
+            result.add(source.key());
+        }
+        return result;
+    }
+
+    // Scan the sources which changed, keep the postings of the others,
+    // a text log which was just written has them from the writer
+    @SuppressWarnings("try")
+    private Map<String, IndexFile.Postings> rebuild(Map<String, IndexFile.Postings> written)
+                                                        throws IOException{
+
+        Map<String, IndexFile.Postings> result = new TreeMap<>();
+        Map<String, Map<String, IndexFile.Postings>> previous = IndexFile.bySource(index);
+
+        try (Perf.Phase phase = Perf.phase(Perf.PARSE)){
+
+            for (int i = 0; i < sources.size(); i++){
+
+                Source source = sources.get(i);
+                Map<String, IndexFile.Postings> kept = previous.get(source.key());
+
+                if (kept == null && source.type == Source.LOG){
+
+                    kept = written;
+                }
+
+                if (kept != null){
+
+                    for (Map.Entry<String, IndexFile.Postings> entry : kept.entrySet()){
+
+                        result.computeIfAbsent(entry.getKey(), k -> new IndexFile.Postings())
+                                .append(entry.getValue(), i);
+                    }
+                }else{
+
+                    scan(source, i, result);
+                }
+            }
+        }
+
+        IndexFile.write(index, keys(), result);
+        return result;
+    }
+
+    // Every line of one source
+    private void scan(Source source, int number, Map<String, IndexFile.Postings> result)
+                        throws IOException{
+
+        long checkpoint = source.type == Source.JOURNAL ? logCheckpoint() : 0;
+
+        try (LineReader reader = new LineReader(source.open())){
+
+            String line;
+
+            // Text log sections
+            boolean isOpLog = source.type != Source.LOG;
+            boolean isTaskSummary = false;
+            int header = 0;
+            boolean first = true;
+
+            // The summary footer after the rows has names too
+            long footer = source.type == Source.LOG ? SummaryFooter.offset(source.file) : -1;
+
+            while ((line = reader.next()) != null){
+
+                if (footer >= 0 && reader.offset() >= footer){
+                    break;
+                }
+
+                long posting = (long) number << IndexFile.SHIFT | reader.offset();
+
+                if (source.type == Source.JOURNAL){
+
+                    if (first){
+
+                        first = false;
+
+                        // Records of an older snapshot were folded into it
+                        if (Journal.readCheckpoint(line) != checkpoint){
+
+                            return;
+                        }
+                        continue;
+                    }
+
+                    if (line.endsWith(Constants.JOURNAL_END)){
+
+                        String[] record = Journal.decode(line.substring(0,
+                                            line.length() - Constants.JOURNAL_END.length()));
+
+                        result.computeIfAbsent(record[2], k -> new IndexFile.Postings())
+                                .operations.add(posting);
+                    }
+                    continue;
+                }
+
+                if (header > 0){
+
+                    header--;
+                    continue;
+                }
+
+                if (source.type == Source.LOG && !isOpLog && !isTaskSummary){
+
+                    if (line.startsWith(Constants.RUNNING)){
+
+                        header = Integer.parseInt(
+                                    line.substring(Constants.RUNNING.length()).trim());
+                        continue;
+                    }
+                }
+
+                if (source.type == Source.LOG){
+
+                    if (line.startsWith(Constants.OP_LOG)){
+
+                        isOpLog = true;
+                        continue;
+                    }else if (line.startsWith(Constants.TASK_SUMMARY)){
+                        continue;
+                    }else if (line.equals(Constants.LABEL)){
+
+                        isOpLog = false;
+                        isTaskSummary = true;
+                        continue;
+                    }
+                }
+
+                if (line.trim().isEmpty()){
+                    continue;
+                }
+
+                if (isOpLog && line.length() > Constants.PRINT_GAP){
+
+                    String name = line.substring(Constants.PRINT_GAP,
+                                    Math.min(line.length(), 2 * Constants.PRINT_GAP)).trim();
+
+                    result.computeIfAbsent(name, k -> new IndexFile.Postings()).operations.add(posting);
+                }else if (isTaskSummary && line.length() > Constants.PRINT_GAP){
+
+                    String name = line.substring(0, Constants.PRINT_GAP).trim();
+
+                    result.computeIfAbsent(name, k -> new IndexFile.Postings()).rows.add(posting);
+                }
+            }
+            Perf.read(reader.offset());
+        }
+    }
+
+    // Checkpoint in the text log header, 0 without one
+    private long logCheckpoint() throws IOException{
+
+        try (LineReader reader = new LineReader(new FileInputStream(log))){
+
+            String line = reader.next();
+            return line == null || !line.startsWith(Constants.CHECKPOINT)
+                        ? 0 : Journal.readCheckpoint(line);
+        }
+    }
+
+    // Lines at the postings, read source by source
+    @SuppressWarnings("try")
+    private List<String> read(IndexFile.LongList postings) throws IOException{
+
+        List<String> result = new ArrayList<>();
+
+        try (Perf.Phase phase = Perf.phase(Perf.READ)){
+
+            int i = 0;
+
+            while (i < postings.size()){
+
+                int number = (int) (postings.get(i) >>> IndexFile.SHIFT);
+                Source source = sources.get(number);
+
+                int end = i;
+                while (end < postings.size() && (postings.get(end) >>> IndexFile.SHIFT) == number){
+                    end++;
+                }
+
+                if (source.isGzip()){
+
+                    readStream(source, postings, i, end, result);
+                }else{
+
+                    readChannel(source, postings, i, end, result);
+                }
+                i = end;
+            }
+        }
+        return result;
+    }
+
+    // Plain files: one positioned read per line
+    private void readChannel(Source source, IndexFile.LongList postings, int from, int to,
+                                List<String> result) throws IOException{
+
+        try (FileChannel channel = FileChannel.open(source.file.toPath(),
+                                                        StandardOpenOption.READ)){
+
+            ByteBuffer buffer = ByteBuffer.allocate(256);
+
+            for (int i = from; i < to; i++){
+
+                long position = postings.get(i) & IndexFile.OFFSET;
+                buffer.clear();
+
+                while (true){
+
+                    int read = channel.read(buffer, position + buffer.position());
+
+                    int newLine = indexOf(buffer.array(), buffer.position());
+
+                    if (newLine >= 0 || read < 0){
+
+                        int length = newLine >= 0 ? newLine : buffer.position();
+                        Perf.read(length + 1);
+                        result.add(source.line(new String(buffer.array(), 0, length,
+                                                    StandardCharsets.UTF_8)));
+                        break;
+                    }
+
+                    if (!buffer.hasRemaining()){
+
+                        ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+                        buffer.flip();
+                        larger.put(buffer);
+                        buffer = larger;
+                    }
+                }
+            }
+        }
+    }
+
+    // Compressed segments can't seek, skip forward to every line
+    private void readStream(Source source, IndexFile.LongList postings, int from, int to,
+                                List<String> result) throws IOException{
+
+        try (LineReader reader = new LineReader(source.open())){
+
+            for (int i = from; i < to; i++){
+
+                reader.skipTo(postings.get(i) & IndexFile.OFFSET);
+                result.add(source.line(reader.next()));
+            }
+        }
+    }
+
+    private static int indexOf(byte[] bytes, int length){
+
+        for (int i = 0; i < length; i++){
+
+            if (bytes[i] == '\n'){
+
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static IndexFile.LongList last(IndexFile.LongList values, int limit){
+
+        if (limit <= 0 || values.size() <= limit){
+
+            return values;
+        }
+
+        IndexFile.LongList result = new IndexFile.LongList();
+
+        for (int i = values.size() - limit; i < values.size(); i++){
+
+            result.add(values.get(i));
+        }
+        return result;
+    }
+
+    private static List<String> last(List<String> values, int limit){
+
+        if (limit <= 0 || values.size() <= limit){
+
+            return values;
+        }
+        return values.subList(values.size() - limit, values.size());
+    }
+
+    // Loaded log, only read for what the index doesn't have
+    protected interface Loaded{
+
+        Logger get() throws IOException;
+    }
+
+    // One file the index points into
+    private static class Source{
+
+        private static final int SEGMENT = 0;
+        private static final int LOG = 1;
+        private static final int JOURNAL = 2;
+
+        private final File file;
+        private final int type;
+        private final long length;
+        private final long modified;
+
+        private Source(File file, int type) throws IOException{
+
+            this.file = file;
+            this.type = type;
+            this.length = file.length();
+            this.modified = Files.getLastModifiedTime(file.toPath())
+                                .to(TimeUnit.NANOSECONDS);
+        }
+
+        // Path, size and modification time as the index stores them
+        private String key(){
+
+            return file.getPath() + "/" + length + "/" + modified;
+        }
+
+        private boolean isGzip(){
+
+            return file.getName().endsWith(Constants.GZIP_SUFFIX);
+        }
+
+        private InputStream open() throws IOException{
+
+            InputStream in = new FileInputStream(file);
+            return isGzip() ? new GZIPInputStream(in, 1 << 16) : in;
+        }
+
+        // Journal lines carry the Operation Log line as their first field
+        private String line(String text){
+
+            if (type != JOURNAL || !text.endsWith(Constants.JOURNAL_END)){
+
+                return text;
+            }
+            return Journal.decode(text.substring(0,
+                        text.length() - Constants.JOURNAL_END.length()))[0];
+        }
+    }
+}
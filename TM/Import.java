@@ -0,0 +1,487 @@
+package TM;
+
+// Imports for files R/W
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+// Imports for data operations
+import java.util.List;
+import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+// Import
+// Closed time windows from a CSV file, either rows of
+//   name,size,start,end,description
+// or the window rows of "export --format csv", times as yyyy/MM/dd-HH:mm:ss.
+// The file is streamed in chunks of rows which are parsed on the common
+// fork/join pool, with a few chunks per core in flight, so memory stays
+// the same for any number of rows. It is streamed twice: the first pass
+// only validates, so a bad row leaves the log as it was, the second adds
+// the windows to the store in file order.
+// Both passes read a copy taken before the first one, so a file which
+// changes in between can't leave half of an import in the store.
+// -Dtm.sequential=true parses every chunk on the calling thread.
+class Import implements AutoCloseable{
+
+    // Rows per chunk
+    private static final int CHUNK = 1 << 13;
+
+    // Errors printed before giving up
+    private static final int MAX_ERRORS = 10;
+
+    private static final String HEADER = "name,size,start,end,description";
+    private static final String EXPORT_HEADER = "record,name,size,start,end,description,seconds";
+    private static final String WINDOW = "window";
+    private static final String TOTAL = "total";
+
+    // Length of yyyy/MM/dd-HH:mm:ss
+    private static final int TIME_LEN = 19;
+
+    private final Path source;
+
+    // Copy of the source both passes read, null until validate
+    private Path copy;
+    private final TaskStore store;
+
+    // Start of the running window of every name, an imported window
+    // of the name has to end before it
+    private final Map<String, Long> running = new HashMap<>();
+
+    // Rows have the columns of an export
+    private boolean exported = false;
+
+    // Days since 1970/01/01 in UTC with imported start times
+    private final Set<Long> days = new TreeSet<>();
+
+    protected Import(Path source, TaskStore store){
+
+        this.source = source;
+        this.store = store;
+
+        for (int slot : store.running()){
+
+            running.put(store.getName(slot), store.getStart(slot));
+        }
+    }
+
+    // First pass, number of windows in the file
+    protected long validate() throws IOException{
+
+        copy = Files.createTempFile(Constants.IMPORT, ".csv");
+        Files.copy(source, copy, StandardCopyOption.REPLACE_EXISTING);
+
+        long[] rows = new long[1];
+        List<String> errors = new ArrayList<>();
+        long[] failed = new long[1];
+
+        stream(chunk -> {
+
+            rows[0] += chunk.count;
+            failed[0] += chunk.failed;
+            days.addAll(chunk.days);
+
+            for (String error : chunk.errors){
+
+                if (errors.size() < MAX_ERRORS){
+
+                    errors.add(error);
+                }
+            }
+        });
+
+        if (failed[0] > 0){
+
+            for (String error : errors){
+
+                System.out.println(error);
+            }
+            throw new RuntimeException(Constants.IMPORT + ": " + failed[0]
+                                        + " invalid rows, nothing was imported");
+        }
+        return rows[0];
+    }
+
+    // UTC days of the start times, a shard is loaded for both ends of each
+    protected Set<Long> days(){ return days; }
+
+    // Second pass, every window goes to the store and its slot to added
+    protected void apply(IntConsumer added) throws IOException{
+
+        stream(chunk -> {
+
+            // The copy is the one which was validated
+            if (chunk.failed > 0){
+
+                throw new RuntimeException(chunk.errors.get(0));
+            }
+
+            for (int i = 0; i < chunk.count; i++){
+
+                added.accept(store.add(chunk.names[i], chunk.sizes[i],
+                                chunk.starts[i], chunk.ends[i], chunk.des[i]));
+            }
+            Perf.touched(chunk.count);
+        });
+    }
+
+    // The copy is removed
+    @Override
+    public void close() throws IOException{
+
+        if (copy != null){
+
+            Files.deleteIfExists(copy);
+        }
+    }
+
+    // Read the copy and hand every parsed chunk to consume, in file order
+    @SuppressWarnings("try")
+    private void stream(Consumer<Chunk> consume) throws IOException{
+
+        int parallelism = ForkJoinPool.getCommonPoolParallelism();
+        boolean parallel = parallelism > 1
+                            && !Boolean.getBoolean(Constants.SEQUENTIAL_PROPERTY);
+
+        Deque<Future<Chunk>> inFlight = new ArrayDeque<>();
+
+        try (Perf.Phase phase = Perf.phase(Perf.PARSE);
+                BufferedReader reader = Files.newBufferedReader(copy, StandardCharsets.UTF_8)){
+
+            Perf.read(Files.size(copy));
+
+            String line;
+            long number = 0;
+            boolean first = true;
+
+            Chunk chunk = new Chunk();
+
+            while ((line = reader.readLine()) != null){
+
+                long lineNumber = ++number;
+
+                // A quoted value may go on over several lines
+                while (quotes(line) % 2 != 0){
+
+                    String next = reader.readLine();
+
+                    if (next == null){
+                        break;
+                    }
+                    line += "\n" + next;
+                    number++;
+                }
+
+                if (first){
+
+                    first = false;
+                    exported = line.equals(EXPORT_HEADER);
+
+                    if (exported || line.equals(HEADER)){
+                        continue;
+                    }
+                }
+
+                if (line.isEmpty()){
+                    continue;
+                }
+
+                chunk.add(line, lineNumber);
+
+                if (chunk.lines == CHUNK){
+
+                    submit(chunk, inFlight, parallel, consume, parallelism * 2);
+                    chunk = new Chunk();
+                }
+            }
+
+            if (chunk.lines > 0){
+
+                submit(chunk, inFlight, parallel, consume, 1);
+            }
+
+            while (!inFlight.isEmpty()){
+
+                consume.accept(next(inFlight));
+            }
+        }
+    }
+
+    // Parse a chunk on the pool, or here, and take finished chunks
+    // once limit chunks are in flight
+    private void submit(Chunk chunk, Deque<Future<Chunk>> inFlight, boolean parallel,
+                            Consumer<Chunk> consume, int limit){
+
+        if (!parallel){
+
+            consume.accept(chunk.parse());
+            return;
+        }
+
+        inFlight.add(ForkJoinPool.commonPool().submit(chunk::parse));
+
+        while (inFlight.size() >= limit){
+
+            consume.accept(next(inFlight));
+        }
+    }
+
+    private static Chunk next(Deque<Future<Chunk>> inFlight){
+
+        try{
+
+            return inFlight.poll().get();
+
+        }catch(InterruptedException ex){
+
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+
+        }catch(ExecutionException ex){
+
+            if (ex.getCause() instanceof RuntimeException){
+
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new RuntimeException(ex.getCause());
+        }
+    }
+
+    private static int quotes(String line){
+
+        int count = 0;
+
+        for (int i = 0; i < line.length(); i++){
+
+            if (line.charAt(i) == '"'){
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // Rows of the file, then the windows parsed from them
+    private class Chunk{
+
+        private String[] text = new String[CHUNK];
+        private long[] numbers = new long[CHUNK];
+        private int lines = 0;
+
+        private int count = 0;
+        private long failed = 0;
+        private List<String> errors = new ArrayList<>();
+        private Set<Long> days = new TreeSet<>();
+
+        private String[] names = new String[CHUNK];
+        private TASK_SIZE[] sizes = new TASK_SIZE[CHUNK];
+        private long[] starts = new long[CHUNK];
+        private long[] ends = new long[CHUNK];
+        private String[] des = new String[CHUNK];
+
+        private void add(String line, long number){
+
+            text[lines] = line;
+            numbers[lines++] = number;
+        }
+
+        // Runs on any thread, only touches this chunk
+        private Chunk parse(){
+
+            RecordParser parser = new RecordParser();
+            List<String> values = new ArrayList<>();
+
+            for (int i = 0; i < lines; i++){
+
+                String error = row(text[i], values, parser);
+
+                if (error != null){
+
+                    failed++;
+
+                    if (errors.size() < MAX_ERRORS){
+
+                        errors.add("Line " + numbers[i] + ": " + error);
+                    }
+                }
+            }
+            text = null;
+            return this;
+        }
+
+        // Add one row, the error if it is not a valid window
+        private String row(String line, List<String> values, RecordParser parser){
+
+            if (!split(line, values)){
+
+                return "Unterminated quote";
+            }
+
+            int at = 0;
+
+            if (exported){
+
+                if (values.size() != 7){
+
+                    return "Expected 7 values, found " + values.size();
+                }
+                if (values.get(0).equals(TOTAL)){
+
+                    return null;
+                }
+                if (!values.get(0).equals(WINDOW)){
+
+                    return "Invalid record: " + values.get(0);
+                }
+                at = 1;
+            }else if (values.size() != 5){
+
+                return "Expected 5 values, found " + values.size();
+            }
+
+            String name = values.get(at);
+            String size = values.get(at + 1).toUpperCase();
+            String start = values.get(at + 2);
+            String end = values.get(at + 3);
+            String description = values.get(at + 4);
+
+            if (hasLineBreak(name) || hasLineBreak(description)){
+
+                return "Line breaks aren't allowed";
+            }
+            if (name.isEmpty() || !name.equals(name.trim())){
+
+                return "Invalid name: " + name;
+            }
+            if (name.length() > Constants.PRINT_GAP){
+
+                return Constants.ERR_EXCEED;
+            }
+            if (RecordParser.sizeOf(name.toUpperCase()) != null){
+
+                return "Invalid name. It can't be one of the following: "
+                        + "S, M, L, XL, or UNDEFINED";
+            }
+
+            TASK_SIZE taskSize = size.isEmpty() ? TASK_SIZE.UNDEFINED
+                                                : RecordParser.sizeOf(size);
+
+            if (taskSize == null){
+
+                return "Invalid size: " + size;
+            }
+
+            if (end.isEmpty()){
+
+                return "Imported windows need an end time";
+            }
+
+            long startTime = start.length() == TIME_LEN ? parser.readTime(start, 0)
+                                                        : Long.MIN_VALUE;
+            long endTime = end.length() == TIME_LEN ? parser.readTime(end, 0)
+                                                    : Long.MIN_VALUE;
+
+            if (startTime == Long.MIN_VALUE){
+
+                return "Invalid time: " + start;
+            }
+            if (endTime == Long.MIN_VALUE){
+
+                return "Invalid time: " + end;
+            }
+            if (startTime < Constants.MIN_EPOCH || endTime <= Constants.MIN_EPOCH){
+
+                return "Time before " + Constants.MIN_TIME.format(Constants.FORMATTER);
+            }
+            if (endTime < startTime){
+
+                return "End time is before start time";
+            }
+
+            Long runningStart = running.get(name);
+
+            if (runningStart != null && endTime > runningStart){
+
+                return "Overlaps the running window of " + name;
+            }
+
+            if (description.isEmpty()){
+
+                description = Constants.UNDEFINED;
+            }
+            if (description.length() > Constants.PRINT_GAP){
+
+                return "Description exceeds " + Constants.PRINT_GAP + " Characters";
+            }
+
+            int i = count++;
+
+            names[i] = name;
+            sizes[i] = taskSize;
+            starts[i] = startTime;
+            ends[i] = endTime;
+            des[i] = description;
+            days.add(Math.floorDiv(startTime, 86400));
+
+            return null;
+        }
+    }
+
+    private static boolean hasLineBreak(String value){
+
+        return value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
+    }
+
+    // Values of one CSV row, "" inside quotes is one quote,
+    // false if a quote is not closed
+    private static boolean split(String line, List<String> values){
+
+        values.clear();
+
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++){
+
+            char c = line.charAt(i);
+
+            if (quoted){
+
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"'){
+
+                    value.append('"');
+                    i++;
+                }else if (c == '"'){
+
+                    quoted = false;
+                }else{
+                    value.append(c);
+                }
+            }else if (c == '"'){
+
+                quoted = true;
+            }else if (c == ','){
+
+                values.add(value.toString());
+                value.setLength(0);
+            }else{
+                value.append(c);
+            }
+        }
+        values.add(value.toString());
+
+        return !quoted;
+    }
+}
@@ -0,0 +1,373 @@
+package TM;
+
+// Imports for files R/W
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+// Imports for data operations
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.HashMap;
+
+// Index file
+// Layout of TM_log.idx: the sources it was built from, then the postings
+// of every name in sorted order, then a directory of where each name starts.
+//   <magic> <version> <sources> <source>... <directory offset>
+//   <names> (<name> <operations> <posting>... <rows> <posting>...)...
+//   <names> <block offset>...
+// A source is its path, size and modification time, so an index of
+// sources which changed since is stale. A lookup maps the file and
+// binary-searches the directory for each name.
+class IndexFile{
+
+    private static final int MAGIC = 0x544D4931;
+    private static final int VERSION = 2;
+
+    // Postings are source << SHIFT | offset
+    protected static final int SHIFT = 40;
+    protected static final long OFFSET = (1L << SHIFT) - 1;
+
+    private IndexFile(){}
+
+    // Postings of the names, null if the index is missing, stale or unreadable
+    protected static Map<String, Postings> lookup(File index, List<String> sources,
+                                                    Iterable<String> names) throws IOException{
+
+        ByteBuffer buffer = map(index);
+
+        if (buffer == null){
+
+            return null;
+        }
+
+        try{
+
+            List<String> indexed = new ArrayList<>();
+            int directory = header(buffer, indexed);
+
+            if (directory < 0 || !indexed.equals(sources)){
+
+                return null;
+            }
+
+            Map<String, Postings> result = new HashMap<>();
+            int count = buffer.getInt(directory);
+
+            for (String name : names){
+
+                int low = 0;
+                int high = count - 1;
+
+                while (low <= high){
+
+                    int middle = (low + high) >>> 1;
+                    int at = (int) buffer.getLong(directory + 4 + 8 * middle);
+                    int compare = utf(buffer, at).compareTo(name);
+
+                    if (compare == 0){
+
+                        result.put(name, Postings.read(buffer, next(buffer, at)));
+                        break;
+                    }else if (compare < 0){
+
+                        low = middle + 1;
+                    }else{
+                        high = middle - 1;
+                    }
+                }
+            }
+            return result;
+
+        }catch(IndexOutOfBoundsException ex){
+
+            return null;
+        }
+    }
+
+    // Postings of the index by source and name, empty if there is none
+    protected static Map<String, Map<String, Postings>> bySource(File index) throws IOException{
+
+        Map<String, Map<String, Postings>> result = new HashMap<>();
+        ByteBuffer buffer = map(index);
+
+        if (buffer == null){
+
+            return result;
+        }
+
+        try{
+
+            List<String> indexed = new ArrayList<>();
+            int directory = header(buffer, indexed);
+
+            if (directory < 0){
+
+                return result;
+            }
+
+            for (String source : indexed){
+
+                result.put(source, new HashMap<>());
+            }
+
+            int count = buffer.getInt(directory);
+
+            for (int i = 0; i < count; i++){
+
+                int at = (int) buffer.getLong(directory + 4 + 8 * i);
+                String name = utf(buffer, at);
+                Postings postings = Postings.read(buffer, next(buffer, at));
+
+                for (int s = 0; s < indexed.size(); s++){
+
+                    Postings part = postings.of(s);
+
+                    if (part != null){
+
+                        result.get(indexed.get(s)).put(name, part);
+                    }
+                }
+            }
+
+        }catch(IndexOutOfBoundsException ex){
+
+            result.clear();
+        }
+        return result;
+    }
+
+    // Sources, postings per name in the order of the map, then the directory
+    protected static void write(File index, List<String> sources,
+                                    Map<String, Postings> postings) throws IOException{
+
+        File temp = File.createTempFile(Constants.INDEX_FNAME, ".tmp",
+                                            index.getAbsoluteFile().getParentFile());
+
+        try{
+
+            int directoryAt;
+            int directory;
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                                            new FileOutputStream(temp), 1 << 16))){
+
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(sources.size());
+
+                for (String source : sources){
+
+                    out.writeUTF(source);
+                }
+
+                // Offset of the directory, filled in below
+                directoryAt = out.size();
+                out.writeLong(0);
+
+                LongList blocks = new LongList();
+                out.writeInt(postings.size());
+
+                for (Map.Entry<String, Postings> entry : postings.entrySet()){
+
+                    blocks.add(out.size());
+                    out.writeUTF(entry.getKey());
+                    entry.getValue().write(out);
+                }
+
+                // Where every name starts, for a binary search
+                directory = out.size();
+                out.writeInt(blocks.size());
+
+                for (int i = 0; i < blocks.size(); i++){
+
+                    out.writeLong(blocks.get(i));
+                }
+            }
+
+            try (RandomAccessFile out = new RandomAccessFile(temp, "rw")){
+
+                out.seek(directoryAt);
+                out.writeLong(directory);
+            }
+            Perf.written(temp.length());
+
+            Files.move(temp.toPath(), index.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.ATOMIC_MOVE);
+        }finally{
+
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
+    // Whole index file, null if there is none or it is too large to map
+    private static ByteBuffer map(File index) throws IOException{
+
+        if (!index.exists()){
+
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(index.toPath(), StandardOpenOption.READ)){
+
+            if (channel.size() > Integer.MAX_VALUE){
+
+                return null;
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    // Sources of the index, then the offset of its directory, -1 if it
+    // isn't an index of this version
+    private static int header(ByteBuffer buffer, List<String> sources) throws IOException{
+
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION){
+
+            return -1;
+        }
+
+        int count = buffer.getInt(8);
+        int at = 12;
+
+        for (int i = 0; i < count; i++){
+
+            sources.add(utf(buffer, at));
+            at = next(buffer, at);
+        }
+        return (int) buffer.getLong(at);
+    }
+
+    // String written by DataOutput.writeUTF
+    private static String utf(ByteBuffer buffer, int at) throws IOException{
+
+        byte[] bytes = new byte[2 + Short.toUnsignedInt(buffer.getShort(at))];
+        buffer.get(at, bytes);
+        Perf.read(bytes.length);
+
+        return new DataInputStream(new ByteArrayInputStream(bytes)).readUTF();
+    }
+
+    // Offset after the string at
+    private static int next(ByteBuffer buffer, int at){
+
+        return at + 2 + Short.toUnsignedInt(buffer.getShort(at));
+    }
+
+    // Operation Log lines and Task Summary rows of one name
+    protected static class Postings{
+
+        protected LongList operations = new LongList();
+        protected LongList rows = new LongList();
+
+        // Postings of another index, moved to a new source number
+        protected void append(Postings other, int source){
+
+            for (int i = 0; i < other.operations.size(); i++){
+
+                operations.add((long) source << SHIFT | (other.operations.get(i) & OFFSET));
+            }
+            for (int i = 0; i < other.rows.size(); i++){
+
+                rows.add((long) source << SHIFT | (other.rows.get(i) & OFFSET));
+            }
+        }
+
+        // Only the postings of one source, null if there are none
+        private Postings of(int source){
+
+            Postings result = new Postings();
+
+            for (int i = 0; i < operations.size(); i++){
+
+                if ((operations.get(i) >>> SHIFT) == source){
+
+                    result.operations.add(operations.get(i));
+                }
+            }
+            for (int i = 0; i < rows.size(); i++){
+
+                if ((rows.get(i) >>> SHIFT) == source){
+
+                    result.rows.add(rows.get(i));
+                }
+            }
+            return result.operations.size() + result.rows.size() == 0 ? null : result;
+        }
+
+        private void write(DataOutputStream out) throws IOException{
+
+            out.writeInt(operations.size());
+            for (int i = 0; i < operations.size(); i++){
+
+                out.writeLong(operations.get(i));
+            }
+            out.writeInt(rows.size());
+            for (int i = 0; i < rows.size(); i++){
+
+                out.writeLong(rows.get(i));
+            }
+        }
+
+        private static Postings read(ByteBuffer buffer, int at){
+
+            Postings result = new Postings();
+
+            int count = buffer.getInt(at);
+            at += 4;
+            for (int i = 0; i < count; i++, at += 8){
+
+                result.operations.add(buffer.getLong(at));
+            }
+            count = buffer.getInt(at);
+            at += 4;
+            for (int i = 0; i < count; i++, at += 8){
+
+                result.rows.add(buffer.getLong(at));
+            }
+            Perf.read(8L * (result.operations.size() + result.rows.size()) + 8);
+            return result;
+        }
+    }
+
+    protected static class LongList{
+
+        private long[] values = new long[4];
+        private int size = 0;
+
+        protected void add(long value){
+
+            if (size == values.length){
+
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        protected void addAll(LongList other){
+
+            for (int i = 0; i < other.size; i++){
+
+                add(other.values[i]);
+            }
+        }
+
+        protected void sort(){ Arrays.sort(values, 0, size); }
+
+        protected long get(int index){ return values[index]; }
+        protected int size(){ return size; }
+    }
+}
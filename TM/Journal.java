@@ -0,0 +1,257 @@
+package TM;
+
+// Imports for files R/W
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+// Imports for data operations
+import java.util.List;
+import java.util.ArrayList;
+
+// Journal
+// Append-only record of every mutation since the last snapshot.
+// Each command writes one line here instead of rewriting TM_log.txt,
+// the snapshot is only rewritten once the journal reaches its limit.
+class Journal{
+
+    // Journal file path
+    private final Path path;
+
+    // Snapshot checkpoint this journal continues from
+    private long checkpoint;
+
+    // Number of records since the checkpoint
+    private int records = 0;
+
+    protected Journal(File file){
+
+        path = file.toPath();
+    }
+
+    // Read records which belong to the snapshot's checkpoint
+    // Records left over from an older checkpoint were already
+    // folded into the snapshot, so they are dropped
+    protected List<String[]> load(long snapshotCheckpoint) throws IOException{
+
+        List<String> lines = Files.exists(path) 
+                                ? Files.readAllLines(path, StandardCharsets.UTF_8)
+                                : new ArrayList<>();
+
+        if (lines.isEmpty()
+                || readCheckpoint(lines.get(0)) != snapshotCheckpoint){
+
+            reset(snapshotCheckpoint);
+            return new ArrayList<>();
+        }
+
+        checkpoint = snapshotCheckpoint;
+
+        List<String[]> result = records(lines);
+        records = result.size();
+        return result;
+    }
+
+    // Same records as load, without resetting a stale journal
+    protected List<String[]> read(long snapshotCheckpoint) throws IOException{
+
+        if (!Files.exists(path)){
+
+            return new ArrayList<>();
+        }
+
+        List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+
+        if (lines.isEmpty()
+                || readCheckpoint(lines.get(0)) != snapshotCheckpoint){
+
+            return new ArrayList<>();
+        }
+        return records(lines);
+    }
+
+    private static List<String[]> records(List<String> lines){
+
+        List<String[]> result = new ArrayList<>();
+
+        for (int i = 1; i < lines.size(); i++){
+
+            String line = lines.get(i);
+
+            // A torn last line from an interrupted write is skipped
+            if (line.isEmpty() || !line.endsWith(Constants.JOURNAL_END)){
+                continue;
+            }
+
+            result.add(decode(line.substring(0,
+                                line.length() - Constants.JOURNAL_END.length())));
+        }
+        return result;
+    }
+
+    // Append mutation records with one write, after cutting off
+    // a torn last line so the new records don't continue it
+    protected void append(List<String[]> batch) throws IOException{
+
+        if (batch.isEmpty()){
+            return;
+        }
+
+        StringBuilder lines = new StringBuilder();
+
+        for (String[] fields : batch){
+
+            for (int i = 0; i < fields.length; i++){
+
+                if (i > 0){
+                    lines.append('\t');
+                }
+                escape(lines, fields[i]);
+            }
+            lines.append(Constants.JOURNAL_END).append('\n');
+        }
+
+        ByteBuffer bytes = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                                        StandardOpenOption.READ, StandardOpenOption.WRITE)){
+
+            long end = complete(channel);
+
+            if (end < channel.size()){
+
+                channel.truncate(end);
+            }
+            channel.position(end);
+
+            while (bytes.hasRemaining()){
+
+                channel.write(bytes);
+            }
+        }
+        Perf.written(bytes.limit());
+        records += batch.size();
+    }
+
+    // Length up to the last newline, every record ends with one,
+    // a reader following the journal stops there too
+    protected static long complete(FileChannel channel) throws IOException{
+
+        ByteBuffer chunk = ByteBuffer.allocate(4096);
+        long end = channel.size();
+
+        while (end > 0){
+
+            int length = (int) Math.min(chunk.capacity(), end);
+            chunk.clear().limit(length);
+
+            while (chunk.hasRemaining()){
+
+                channel.read(chunk, end - length + chunk.position());
+            }
+
+            for (int i = length - 1; i >= 0; i--){
+
+                if (chunk.get(i) == '\n'){
+
+                    return end - length + i + 1;
+                }
+            }
+            end -= length;
+        }
+        return 0;
+    }
+
+    // Start an empty journal on top of a new snapshot
+    protected void reset(long newCheckpoint) throws IOException{
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+
+        Files.write(temp, (Constants.CHECKPOINT + " " + newCheckpoint + "\n")
+                            .getBytes(StandardCharsets.UTF_8));
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING,
+                                StandardCopyOption.ATOMIC_MOVE);
+
+        checkpoint = newCheckpoint;
+        records = 0;
+    }
+
+    protected long getCheckpoint(){ return checkpoint; }
+
+    // Check if the snapshot should be rewritten
+    protected boolean isFull(){ return records >= Constants.JOURNAL_LIMIT; }
+
+    // Parse "Checkpoint: N", -1 if the line is not a checkpoint
+    protected static long readCheckpoint(String line){
+
+        if (!line.startsWith(Constants.CHECKPOINT)){
+
+            return -1;
+        }
+
+        try {
+
+            return Long.parseLong(line.substring(Constants.CHECKPOINT.length()).trim());
+
+        } catch (NumberFormatException e) {
+
+            return -1;
+        }
+    }
+
+    // Fields are tab separated, so tabs, newlines and
+    // backslashes inside a field are escaped
+    private static void escape(StringBuilder out, String field){
+
+        for (int i = 0; i < field.length(); i++){
+
+            char c = field.charAt(i);
+
+            switch (c){
+                case '\\': out.append("\\\\"); break;
+                case '\t': out.append("\\t"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                default: out.append(c);
+            }
+        }
+    }
+
+    protected static String[] decode(String line){
+
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+
+        for (int i = 0; i < line.length(); i++){
+
+            char c = line.charAt(i);
+
+            if (c == '\t'){
+
+                fields.add(field.toString());
+                field.setLength(0);
+            }else if (c == '\\' && i + 1 < line.length()){
+
+                char next = line.charAt(++i);
+
+                switch (next){
+                    case 't': field.append('\t'); break;
+                    case 'n': field.append('\n'); break;
+                    case 'r': field.append('\r'); break;
+                    default: field.append(next);
+                }
+            }else{
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+
+        return fields.toArray(new String[0]);
+    }
+}
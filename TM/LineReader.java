@@ -0,0 +1,104 @@
+package TM;
+
+// Imports for files R/W
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+// Imports for data operations
+import java.util.Arrays;
+
+// Line reader
+// Lines of a stream with the byte offset each one starts at,
+// for the history index which seeks back to them.
+class LineReader implements AutoCloseable{
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[1 << 16];
+    private int position = 0;
+    private int limit = 0;
+
+    // Offset of the buffer start and of the last line
+    private long base = 0;
+    private long lineStart = 0;
+
+    private byte[] line = new byte[256];
+
+    protected LineReader(InputStream in){
+
+        this.in = in;
+    }
+
+    protected long offset(){ return lineStart; }
+
+    // Next line without its line break, null at the end
+    protected String next() throws IOException{
+
+        lineStart = base + position;
+        int length = 0;
+
+        while (true){
+
+            if (position == limit && !fill()){
+
+                return length == 0 ? null : text(length);
+            }
+
+            byte b = buffer[position++];
+
+            if (b == '\n'){
+
+                return text(length);
+            }
+
+            if (length == line.length){
+
+                line = Arrays.copyOf(line, length * 2);
+            }
+            line[length++] = b;
+        }
+    }
+
+    // Skip forward to a line which starts at offset
+    protected void skipTo(long offset) throws IOException{
+
+        while (base + limit <= offset){
+
+            if (!fill()){
+                return;
+            }
+        }
+        position = (int) (offset - base);
+    }
+
+    private boolean fill() throws IOException{
+
+        base += limit;
+        position = 0;
+        limit = 0;
+
+        int read = in.read(buffer);
+
+        if (read <= 0){
+
+            return false;
+        }
+        limit = read;
+        return true;
+    }
+
+    private String text(int length){
+
+        if (length > 0 && line[length - 1] == '\r'){
+
+            length--;
+        }
+        return new String(line, 0, length, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException{
+
+        in.close();
+    }
+}
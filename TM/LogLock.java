@@ -0,0 +1,72 @@
+package TM;
+
+// Imports for files R/W
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+// Log lock
+// Cross-process lock on a file next to the log. A command which changes
+// the log holds it exclusively from readFile until its write is done,
+// so two processes can't both read the same log and overwrite each other.
+// Commands which only read the log share it.
+// The daemon takes it once per group of commands.
+// Loading cleans up after a stopped compact only while it is held
+// exclusively, so readers sharing it never write.
+// Held by try-with-resources without being referenced, the methods
+// holding it suppress the try lint.
+class LogLock implements AutoCloseable{
+
+    private static final Path LOCK = Paths.get(Constants.LOCK_FNAME);
+
+    // This process holds it exclusively
+    private static boolean exclusive = false;
+
+    private final FileChannel channel;
+    private final FileLock lock;
+
+    private LogLock(boolean shared) throws IOException{
+
+        channel = FileChannel.open(LOCK, StandardOpenOption.CREATE,
+                                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try{
+
+            // Blocks until every other process released it
+            lock = channel.lock(0, Long.MAX_VALUE, shared);
+            exclusive = !shared;
+
+        }catch(IOException | RuntimeException ex){
+
+            channel.close();
+            throw ex;
+        }
+    }
+
+    protected static LogLock exclusive() throws IOException{
+
+        return new LogLock(false);
+    }
+
+    protected static LogLock shared() throws IOException{
+
+        return new LogLock(true);
+    }
+
+    protected static boolean isExclusive(){ return exclusive; }
+
+    @Override
+    public void close() throws IOException{
+
+        try{
+
+            lock.release();
+        }finally{
+
+            exclusive = false;
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package TM;
+
+// Imports for files R/W
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPOutputStream;
+
+// Imports for data operations
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Comparator;
+
+// Operation history
+// The Operation Log kept as segment files instead of a section of TM_log.txt.
+// New operations are appended to a small active segment, which is rolled
+// into an immutable numbered segment once it is large enough.
+// Loading the log never reads any segment.
+// Compact writes a marker with the segment it archives the Operation Log
+// as and the stamp of the log before moving anything, and removes it once
+// the snapshot without that section is written. While the log still has
+// that stamp the snapshot wasn't written and the segment only repeats the
+// log, so readers leave it out. The next command holding the lock
+// exclusively undoes such a compact, or keeps one whose snapshot was written.
+// Only the first compact archives a non-empty Operation Log, later
+// operations go to the segments.
+class OperationHistory{
+
+    // Segment directory
+    private final Path dir;
+
+    // Segment which receives new operations
+    private final Path active;
+
+    // Marker of a compact which hasn't written its snapshot yet
+    private final Path marker;
+
+    // Log the segments belong to
+    private final File log;
+
+    // This process is compacting, its archived segment counts
+    private boolean compacting = false;
+
+    protected OperationHistory(File dir, File log){
+
+        this.dir = dir.toPath();
+        this.active = this.dir.resolve(Constants.SEGMENT_ACTIVE);
+        this.marker = this.dir.resolve(Constants.SEGMENT_MARKER);
+        this.log = log;
+    }
+
+    // Start a compact, the next segment is the archived Operation Log
+    protected void begin() throws IOException{
+
+        Path temp = dir.resolve(Constants.SEGMENT_MARKER + ".tmp");
+        Files.write(temp, List.of(segmentName(nextSegment()), RollupFile.stamp(log)),
+                        StandardCharsets.UTF_8);
+        Files.move(temp, marker, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        compacting = true;
+    }
+
+    // The snapshot without the Operation Log is written
+    protected void finish() throws IOException{
+
+        Files.deleteIfExists(marker);
+        compacting = false;
+    }
+
+    // Segment of a compact which stopped before its snapshot, null if
+    // there is none. Only reads, a reader may see the marker go meanwhile.
+    private String undone() throws IOException{
+
+        if (compacting){
+
+            return null;
+        }
+
+        try{
+
+            List<String> lines = Files.readAllLines(marker, StandardCharsets.UTF_8);
+
+            return lines.size() == 2 && lines.get(1).equals(RollupFile.stamp(log))
+                    ? lines.get(0) : null;
+
+        }catch(NoSuchFileException ex){
+
+            return null;
+        }
+    }
+
+    // A compact stopped before its snapshot and there are no other segments,
+    // the log is read as if it never was compacted
+    protected boolean isUndone() throws IOException{
+
+        return undone() != null && segments().isEmpty()
+                && (!Files.exists(active) || Files.size(active) == 0);
+    }
+
+    // Clean up after a compact which stopped, only while holding the
+    // log lock exclusively. The segment of a compact which didn't write
+    // its snapshot goes, otherwise the compact is kept.
+    // A segment compressed before it was deleted keeps its .gz only.
+    // False if the compact is undone and there are no segments any more.
+    protected boolean recover() throws IOException{
+
+        List<Path> paths = new ArrayList<>();
+
+        try (var files = Files.list(dir)){
+
+            files.forEach(paths::add);
+        }
+
+        for (Path path : paths){
+
+            String name = path.getFileName().toString();
+
+            if (name.endsWith(".tmp")){
+
+                Files.deleteIfExists(path);
+
+            }else if (name.startsWith(Constants.SEGMENT_PREFIX)
+                    && !name.endsWith(Constants.GZIP_SUFFIX)
+                    && Files.exists(path.resolveSibling(name + Constants.GZIP_SUFFIX))){
+
+                Files.deleteIfExists(path);
+            }
+        }
+
+        if (!Files.exists(marker)){
+            return true;
+        }
+
+        String archived = undone();
+
+        if (archived == null){
+
+            finish();
+            return true;
+        }
+
+        Files.deleteIfExists(dir.resolve(archived));
+        Files.deleteIfExists(dir.resolve(archived + Constants.GZIP_SUFFIX));
+        finish();
+
+        if (!segments().isEmpty() || (Files.exists(active) && Files.size(active) > 0)){
+            return true;
+        }
+
+        Files.deleteIfExists(active);
+        Files.delete(dir);
+        return false;
+    }
+
+    // Append operation lines to the active segment
+    protected void append(List<String> lines) throws IOException{
+
+        if (lines.isEmpty()){
+            return;
+        }
+
+        StringBuilder text = new StringBuilder();
+
+        for (String line : lines){
+
+            text.append(line).append('\n');
+        }
+
+        byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+
+        Files.write(active, bytes, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        Perf.written(bytes.length);
+
+        if (Files.size(active) >= Constants.SEGMENT_BYTES){
+
+            roll();
+        }
+    }
+
+    // Turn the active segment into an immutable one
+    protected void roll() throws IOException{
+
+        if (!Files.exists(active) || Files.size(active) == 0){
+            return;
+        }
+
+        Files.move(active, dir.resolve(segmentName(nextSegment())),
+                    StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Write lines which came before every segment, e.g. the Operation Log
+    // section of an old snapshot, as a segment of their own
+    protected void archive(List<String> lines) throws IOException{
+
+        if (lines.isEmpty()){
+            return;
+        }
+
+        Path temp = dir.resolve(Constants.SEGMENT_ACTIVE + ".tmp");
+        Files.write(temp, lines, StandardCharsets.UTF_8);
+        Files.move(temp, dir.resolve(segmentName(nextSegment())),
+                    StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Compress every rolled segment which is still plain text
+    protected void compress() throws IOException{
+
+        for (Path segment : segments()){
+
+            String name = segment.getFileName().toString();
+
+            if (name.endsWith(Constants.GZIP_SUFFIX)){
+                continue;
+            }
+
+            Path zipped = segment.resolveSibling(name + Constants.GZIP_SUFFIX);
+            Path temp = segment.resolveSibling(name + Constants.GZIP_SUFFIX + ".tmp");
+
+            try (InputStream in = Files.newInputStream(segment);
+                    OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp))){
+
+                in.transferTo(out);
+            }
+            Files.move(temp, zipped, StandardCopyOption.ATOMIC_MOVE);
+            Files.delete(segment);
+        }
+    }
+
+    // Rolled segments, oldest first
+    // A segment left next to its .gz by a compress which stopped is not
+    // listed, nor the segment of a compact which didn't write its snapshot.
+    protected List<Path> segments() throws IOException{
+
+        List<Path> result = new ArrayList<>();
+        String archived = undone();
+
+        try (var files = Files.list(dir)){
+
+            files.filter(path -> path.getFileName().toString()
+                                        .startsWith(Constants.SEGMENT_PREFIX))
+                 .filter(path -> !path.getFileName().toString().endsWith(".tmp"))
+                 .filter(path -> !Files.exists(path.resolveSibling(
+                                    path.getFileName() + Constants.GZIP_SUFFIX)))
+                 .filter(path -> archived == null || !path.getFileName().toString()
+                                    .startsWith(archived))
+                 .forEach(result::add);
+        }
+        result.sort(Comparator.comparingInt(OperationHistory::number));
+        return result;
+    }
+
+    protected Path getActive(){ return active; }
+
+    private int nextSegment() throws IOException{
+
+        List<Path> rolled = segments();
+
+        if (rolled.isEmpty()){
+
+            return 1;
+        }
+
+        return number(rolled.get(rolled.size() - 1)) + 1;
+    }
+
+    // Number of a segment, the digits after the prefix of any width
+    private static int number(Path segment){
+
+        String name = segment.getFileName().toString();
+        int begin = Constants.SEGMENT_PREFIX.length();
+        int end = begin;
+
+        while (end < name.length() && Character.isDigit(name.charAt(end))){
+
+            end++;
+        }
+        return Integer.parseInt(name.substring(begin, end));
+    }
+
+    private static String segmentName(int number){
+
+        return Constants.SEGMENT_PREFIX + String.format("%06d", number) + ".log";
+    }
+}
@@ -0,0 +1,265 @@
+package TM;
+
+// Imports for timing
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+// Imports for data operations
+import java.util.Map;
+import java.util.LinkedHashMap;
+
+// Imports for JDK Flight Recorder
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// Perf
+// Time spent per phase of a command, with bytes read and written
+// and the number of time windows touched.
+// Every phase is also a TM.Phase Flight Recorder event and every command
+// a TM.Command event, e.g. java -XX:StartFlightRecording=filename=tm.jfr ...
+// "TM --perf <command>" prints the breakdown after the command.
+// A phase only counts its own time, time of phases inside it is left out.
+class Perf{
+
+    // Phases
+    protected static final String STARTUP = "startup";
+    protected static final String READ = "read";
+    protected static final String PARSE = "parse";
+    protected static final String JOURNAL = "journal";
+    protected static final String OPERATION = "operation";
+    protected static final String WRITE = "write";
+
+    // Nanoseconds, bytes and windows of every phase in this command
+    private static Map<String, long[]> phases = new LinkedHashMap<>();
+
+    private static String command = "";
+    private static Phase current;
+
+    private static long bytesRead = 0;
+    private static long bytesWritten = 0;
+    private static long windows = 0;
+
+    private Perf(){}
+
+    // JVM start up to now, only for the report
+    protected static void startup(){
+
+        long uptime = ManagementFactory.getRuntimeMXBean().getUptime();
+
+        phases.computeIfAbsent(STARTUP, k -> new long[3])[0]
+                                += TimeUnit.MILLISECONDS.toNanos(uptime);
+    }
+
+    // Start a command, every other phase runs inside of it
+    protected static Phase command(String name){
+
+        command = name;
+        bytesRead = 0;
+        bytesWritten = 0;
+        windows = 0;
+
+        long[] startup = phases.get(STARTUP);
+        phases.clear();
+
+        if (startup != null){
+
+            phases.put(STARTUP, startup);
+        }
+        return new Phase(OPERATION, true);
+    }
+
+    protected static Phase phase(String name){
+
+        return new Phase(name, false);
+    }
+
+    protected static void read(long bytes){
+
+        bytesRead += bytes;
+
+        if (current != null){
+
+            current.bytes += bytes;
+        }
+    }
+
+    protected static void written(long bytes){
+
+        bytesWritten += bytes;
+
+        if (current != null){
+
+            current.bytes += bytes;
+        }
+    }
+
+    protected static void touched(long count){
+
+        windows += count;
+
+        if (current != null){
+
+            current.windows += count;
+        }
+    }
+
+    // Breakdown of the last command
+    protected static String report(){
+
+        StringBuilder result = new StringBuilder();
+        long total = 0;
+
+        result.append(String.format(Constants.PRINT_FORMAT, "Phase"))
+                .append(String.format(Constants.PRINT_FORMAT, "Time"))
+                .append(String.format(Constants.PRINT_FORMAT, "Bytes"))
+                .append("Windows\n");
+
+        for (Map.Entry<String, long[]> entry : phases.entrySet()){
+
+            long[] phase = entry.getValue();
+            total += phase[0];
+
+            result.append(String.format(Constants.PRINT_FORMAT, entry.getKey()))
+                    .append(String.format(Constants.PRINT_FORMAT, millis(phase[0])))
+                    .append(String.format(Constants.PRINT_FORMAT, phase[1]))
+                    .append(phase[2]).append("\n");
+        }
+
+        result.append(String.format(Constants.PRINT_FORMAT, "total"))
+                .append(String.format(Constants.PRINT_FORMAT, millis(total)))
+                .append(String.format(Constants.PRINT_FORMAT, bytesRead + bytesWritten))
+                .append(windows).append("\n")
+                .append("Bytes read: ").append(bytesRead).append("\n")
+                .append("Bytes written: ").append(bytesWritten).append("\n");
+
+        return result.toString();
+    }
+
+    private static String millis(long nanos){
+
+        return String.format("%.3f ms", nanos / 1e6);
+    }
+
+    // One running phase, closed with try-with-resources
+    // The body never refers to it, methods opening one suppress the try lint.
+    protected static class Phase implements AutoCloseable{
+
+        private final String name;
+        private final Phase parent;
+        private final long begin;
+        private final PhaseEvent event = new PhaseEvent();
+
+        // Only set on the phase of a whole command
+        private final CommandEvent commandEvent;
+
+        // Time of the phases inside this one
+        private long inner = 0;
+
+        private long bytes = 0;
+        private long windows = 0;
+
+        private Phase(String name, boolean isCommand){
+
+            this.name = name;
+            this.parent = current;
+            this.commandEvent = isCommand ? new CommandEvent() : null;
+
+            current = this;
+
+            if (commandEvent != null){
+
+                commandEvent.begin();
+            }
+            event.begin();
+            begin = System.nanoTime();
+        }
+
+        @Override
+        public void close(){
+
+            long elapsed = System.nanoTime() - begin;
+
+            long[] phase = phases.computeIfAbsent(name, k -> new long[3]);
+            phase[0] += elapsed - inner;
+            phase[1] += bytes;
+            phase[2] += windows;
+
+            current = parent;
+
+            if (parent != null){
+
+                parent.inner += elapsed;
+            }
+
+            event.end();
+
+            if (event.shouldCommit()){
+
+                event.command = command;
+                event.phase = name;
+                event.bytes = bytes;
+                event.windows = windows;
+                event.commit();
+            }
+
+            if (commandEvent != null){
+
+                commandEvent.end();
+
+                if (commandEvent.shouldCommit()){
+
+                    commandEvent.command = command;
+                    commandEvent.bytesRead = bytesRead;
+                    commandEvent.bytesWritten = bytesWritten;
+                    commandEvent.windows = Perf.windows;
+                    commandEvent.commit();
+                }
+            }
+        }
+    }
+
+    @Name("TM.Phase")
+    @Label("Phase")
+    @Category("TM")
+    @Description("One phase of a TM command, phases inside it are separate events")
+    static class PhaseEvent extends Event{
+
+        @Label("Command")
+        String command;
+
+        @Label("Phase")
+        String phase;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        @Label("Windows")
+        long windows;
+    }
+
+    @Name("TM.Command")
+    @Label("Command")
+    @Category("TM")
+    @Description("A whole TM command with its totals")
+    static class CommandEvent extends Event{
+
+        @Label("Command")
+        String command;
+
+        @Label("Bytes Read")
+        @DataAmount
+        long bytesRead;
+
+        @Label("Bytes Written")
+        @DataAmount
+        long bytesWritten;
+
+        @Label("Windows")
+        long windows;
+    }
+}
@@ -0,0 +1,88 @@
+package TM;
+
+// Imports for data operations
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+// Ranking
+// Name ids ordered by one aggregate, largest first,
+// names with the same value stay in Task Summary order.
+// top keeps a heap of the best n ids seen so far, so it takes
+// O(names log n) time and O(n) memory; sorted orders every id.
+class Ranking{
+
+    private Ranking(){}
+
+    // Best n ids among the present ones
+    protected static int[] top(long[] keys, boolean[] present, int n){
+
+        // Head is the worst id kept: smallest value, latest name on ties
+        PriorityQueue<Integer> heap = new PriorityQueue<>(n + 1,
+                                        (a, b) -> compare(keys, b, a));
+
+        for (int id = 0; id < keys.length; id++){
+
+            if (!present[id]){
+                continue;
+            }
+
+            if (heap.size() < n){
+
+                heap.add(id);
+            }else if (compare(keys, id, heap.peek()) < 0){
+
+                heap.poll();
+                heap.add(id);
+            }
+        }
+
+        int[] result = new int[heap.size()];
+
+        for (int i = result.length - 1; i >= 0; i--){
+
+            result[i] = heap.poll();
+        }
+        return result;
+    }
+
+    // Every present id, stable sort
+    protected static int[] sorted(long[] keys, boolean[] present){
+
+        int count = 0;
+
+        for (boolean value : present){
+
+            if (value){
+                count++;
+            }
+        }
+
+        Integer[] ids = new Integer[count];
+
+        for (int id = 0, i = 0; id < keys.length; id++){
+
+            if (present[id]){
+
+                ids[i++] = id;
+            }
+        }
+
+        Arrays.sort(ids, (a, b) -> compare(keys, a, b));
+
+        int[] result = new int[count];
+
+        for (int i = 0; i < count; i++){
+
+            result[i] = ids[i];
+        }
+        return result;
+    }
+
+    // Negative if a comes first: larger value, then smaller id
+    private static int compare(long[] keys, int a, int b){
+
+        int result = Long.compare(keys[b], keys[a]);
+
+        return result != 0 ? result : Integer.compare(a, b);
+    }
+}
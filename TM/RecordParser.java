@@ -0,0 +1,227 @@
+package TM;
+
+// Imports for store time value
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.time.Year;
+import java.time.ZonedDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+
+// Record parser
+// Reads one fixed-width Task Summary row in place:
+// no segment list, no regex and no DateTimeFormatter per row.
+// Fields of the last parsed row are kept in this object,
+// so one parser should only be used by one thread.
+class RecordParser{
+
+    // Column of every field in a row
+    private static final int NAME = 0;
+    private static final int SIZE = Constants.PRINT_GAP;
+    private static final int START = Constants.PRINT_GAP * 2;
+    private static final int END = Constants.PRINT_GAP * 3;
+    private static final int DES = Constants.PRINT_GAP * 4;
+
+    // Length of yyyy/MM/dd-HH:mm:ss
+    private static final int TIME_LEN = 19;
+
+    // Stay this far from an offset transition before trusting the cached offset
+    private static final long TRANSITION_MARGIN = 86400;
+
+    private static final TASK_SIZE[] SIZES = TASK_SIZE.values();
+
+    // Last parsed row
+    protected String name;
+    protected TASK_SIZE size;
+    protected long start;
+    protected long end;
+    protected String des;
+
+    // Zone offset which is valid between two transitions
+    private final ZoneId zone;
+    private final ZoneRules rules;
+    private long offsetFrom = Long.MAX_VALUE;
+    private long offsetTo = Long.MIN_VALUE;
+    private int offset;
+
+    protected RecordParser(){
+
+        this(ZoneId.systemDefault());
+    }
+
+    protected RecordParser(ZoneId zone){
+
+        this.zone = zone;
+        this.rules = zone.getRules();
+    }
+
+    // Parse one row, false if it is not a valid task row
+    protected boolean parse(String line){
+
+        int len = line.length();
+
+        if (len < DES){
+
+            return false;
+        }
+
+        size = sizeOf(line, SIZE, trimEnd(line, SIZE, START));
+        start = readTime(line, START);
+        end = readTime(line, END);
+
+        if (size == null || start == Long.MIN_VALUE || end == Long.MIN_VALUE){
+
+            return false;
+        }
+
+        name = line.substring(NAME, trimEnd(line, NAME, SIZE));
+        des = line.substring(DES, trimEnd(line, DES, Math.min(DES + Constants.PRINT_GAP, len)));
+
+        return true;
+    }
+
+    // Size with the name in line[from, to), null if there is none
+    protected static TASK_SIZE sizeOf(CharSequence line, int from, int to){
+
+        for (TASK_SIZE size : SIZES){
+
+            String value = size.name();
+
+            if (value.length() != to - from){
+                continue;
+            }
+
+            int i = 0;
+
+            while (i < value.length() && value.charAt(i) == line.charAt(from + i)){
+                i++;
+            }
+
+            if (i == value.length()){
+
+                return size;
+            }
+        }
+        return null;
+    }
+
+    protected static TASK_SIZE sizeOf(CharSequence value){
+
+        return sizeOf(value, 0, value.length());
+    }
+
+    // yyyy/MM/dd-HH:mm:ss at from into epoch seconds,
+    // Long.MIN_VALUE if it is malformed
+    protected long readTime(CharSequence line, int from){
+
+        if (line.length() < from + TIME_LEN
+                || line.charAt(from + 4) != '/' || line.charAt(from + 7) != '/'
+                || line.charAt(from + 10) != '-' || line.charAt(from + 13) != ':'
+                || line.charAt(from + 16) != ':'){
+
+            return Long.MIN_VALUE;
+        }
+
+        int year = digits(line, from, 4);
+        int month = digits(line, from + 5, 2);
+        int day = digits(line, from + 8, 2);
+        int hour = digits(line, from + 11, 2);
+        int minute = digits(line, from + 14, 2);
+        int second = digits(line, from + 17, 2);
+
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59
+                || second < 0 || second > 59){
+
+            return Long.MIN_VALUE;
+        }
+
+        // Like the formatter, a day past the end of the month is its last day
+        day = Math.min(day, Month.of(month).length(Year.isLeap(year)));
+
+        long local = epochDay(year, month, day) * 86400
+                        + hour * 3600 + minute * 60 + second;
+
+        return toEpoch(local);
+    }
+
+    // Local seconds into epoch seconds in this zone
+    private long toEpoch(long local){
+
+        long epoch = local - offset;
+
+        if (epoch >= offsetFrom && epoch < offsetTo){
+
+            return epoch;
+        }
+
+        // Slow path near a transition or outside the cached range,
+        // same gap and overlap rules as ZonedDateTime.parse
+        epoch = LocalDateTime.ofEpochSecond(local, 0, ZoneOffset.UTC)
+                    .atZone(zone).toEpochSecond();
+
+        Instant instant = Instant.ofEpochSecond(epoch);
+        ZoneOffsetTransition previous = rules.previousTransition(instant);
+        ZoneOffsetTransition next = rules.nextTransition(instant);
+
+        offset = rules.getOffset(instant).getTotalSeconds();
+        offsetFrom = previous == null ? Long.MIN_VALUE
+                        : previous.toEpochSecond() + TRANSITION_MARGIN;
+        offsetTo = next == null ? Long.MAX_VALUE
+                        : next.toEpochSecond() - TRANSITION_MARGIN;
+
+        return epoch;
+    }
+
+    // Epoch seconds as a time in this zone
+    // The running sentinel reuses Constants.MIN_TIME
+    protected ZonedDateTime toTime(long epoch){
+
+        if (epoch == Constants.MIN_EPOCH){
+
+            return Constants.MIN_TIME;
+        }
+        return Instant.ofEpochSecond(epoch).atZone(zone);
+    }
+
+    // Days since 1970/01/01 of a proleptic Gregorian date
+    private static long epochDay(int year, int month, int day){
+
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yoe = y - era * 400;
+        long doy = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+
+        return era * 146097 + doe - 719468;
+    }
+
+    private static int digits(CharSequence line, int from, int count){
+
+        int value = 0;
+
+        for (int i = from; i < from + count; i++){
+
+            char c = line.charAt(i);
+
+            if (c < '0' || c > '9'){
+
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    // End of line[from, to) without trailing whitespace
+    private static int trimEnd(CharSequence line, int from, int to){
+
+        while (to > from && Character.isWhitespace(line.charAt(to - 1))){
+            to--;
+        }
+        return to;
+    }
+}
@@ -0,0 +1,148 @@
+package TM;
+
+// Imports for files R/W
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+// Imports for data operations
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+
+// Renames
+// The Operation Log line of a rename doesn't carry the new name, so every
+// flush appends its renames to TM_log.idx.renames in the order they happened:
+//   <name> <new name> <rename lines of name up to this one>
+// The count is a position in the log: lines of the old name up to that
+// rename line belong to the new name, later ones to a new task of that name.
+class Renames{
+
+    private Renames(){}
+
+    // Record renames once their lines are written, lines of each old name
+    // up to its rename belong to the new one
+    protected static void record(File log, List<String[]> records) throws IOException{
+
+        if (records.isEmpty()){
+            return;
+        }
+
+        File file = new File(log.getAbsoluteFile().getParentFile(), Constants.RENAMES_FNAME);
+        Map<String, Integer> counts = new HashMap<>();
+
+        for (String[] record : read(file)){
+
+            counts.merge(record[0], 1, Integer::sum);
+        }
+
+        StringBuilder text = new StringBuilder();
+
+        for (String[] record : records){
+
+            text.append(record[0]).append('\t').append(record[1]).append('\t')
+                .append(counts.merge(record[0], 1, Integer::sum)).append('\n');
+        }
+
+        byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+
+        Files.write(file.toPath(), bytes, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        Perf.written(bytes.length);
+    }
+
+    // The name and every name it had before, with the number of rename
+    // lines of that name up to the one which gave it away
+    protected static Map<String, Integer> names(File renames, String name) throws IOException{
+
+        Map<String, Integer> result = new LinkedHashMap<>();
+        result.put(name, Integer.MAX_VALUE);
+
+        List<String[]> records = read(renames);
+
+        // Renames which happened before each name was given away
+        Map<String, Integer> before = new HashMap<>();
+        before.put(name, records.size());
+
+        List<String> pending = new ArrayList<>(result.keySet());
+
+        while (!pending.isEmpty()){
+
+            String current = pending.remove(pending.size() - 1);
+
+            for (int i = 0; i < before.get(current); i++){
+
+                String[] record = records.get(i);
+
+                if (record[1].equals(current) && !result.containsKey(record[0])){
+
+                    result.put(record[0], Integer.parseInt(record[2]));
+                    before.put(record[0], i);
+                    pending.add(record[0]);
+                }
+            }
+        }
+        return result;
+    }
+
+    // Records of the renames file in the order they happened
+    private static List<String[]> read(File file) throws IOException{
+
+        List<String[]> result = new ArrayList<>();
+
+        if (!file.exists()){
+
+            return result;
+        }
+
+        for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)){
+
+            String[] record = line.split("\t");
+
+            if (record.length == 3){
+
+                result.add(record);
+            }
+        }
+        return result;
+    }
+
+    // Operation Log lines of the names in log order, a name's lines
+    // only up to the rename line which gave it away
+    protected static List<String> filter(Iterable<String> lines, Map<String, Integer> names){
+
+        List<String> result = new ArrayList<>();
+        Map<String, Integer> renamed = new HashMap<>();
+
+        for (String line : lines){
+
+            if (line.length() <= Constants.PRINT_GAP){
+                continue;
+            }
+
+            String name = line.substring(Constants.PRINT_GAP,
+                            Math.min(line.length(), 2 * Constants.PRINT_GAP)).trim();
+            Integer until = names.get(name);
+
+            if (until == null){
+                continue;
+            }
+
+            int count = renamed.getOrDefault(name, 0);
+
+            if (count < until){
+
+                result.add(line);
+            }
+
+            if (line.substring(0, Constants.PRINT_GAP).trim().equals(Constants.RENAME)){
+
+                renamed.put(name, count + 1);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,276 @@
+package TM;
+
+// Imports for files R/W
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+// Imports for store time value
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+
+// Renderer
+// Writes fixed-width rows without String.format: columns are padded
+// into one reusable buffer, which goes to the writer in large chunks.
+// Times are formatted from epoch seconds with a cached zone offset,
+// same output as Constants.FORMATTER.
+// Nothing is written before flush, so a renderer is flushed once at the end.
+class Renderer{
+
+    // Buffer size which is written out at once
+    private static final int CHUNK = 1 << 16;
+
+    private final Writer out;
+    private final String newLine;
+    private final StringBuilder buffer = new StringBuilder(CHUNK + 1024);
+
+    // Bytes of the rendered text in a charset, only counted when asked
+    // for, up to counted in the buffer
+    private Charset charset;
+    private boolean utf8;
+    private long bytes = 0;
+    private int counted = 0;
+
+    // Zone offset which is valid between two transitions
+    private final ZoneId zone;
+    private final ZoneRules rules;
+    private long offsetFrom = Long.MAX_VALUE;
+    private long offsetTo = Long.MIN_VALUE;
+    private int offset;
+
+    protected Renderer(Writer out){
+
+        this(out, "\n");
+    }
+
+    protected Renderer(Writer out, String newLine){
+
+        this.out = out;
+        this.newLine = newLine;
+        this.zone = ZoneId.systemDefault();
+        this.rules = zone.getRules();
+    }
+
+    // Renderer for System.out, whichever stream it currently is
+    protected static Renderer console(){
+
+        return new Renderer(new OutputStreamWriter(System.out, Charset.defaultCharset()),
+                                System.lineSeparator());
+    }
+
+    // Value padded to Constants.PRINT_GAP, like Constants.PRINT_FORMAT
+    protected Renderer column(String value){
+
+        buffer.append(value);
+
+        for (int i = value.length(); i < Constants.PRINT_GAP; i++){
+
+            buffer.append(' ');
+        }
+        return this;
+    }
+
+    // yyyy/MM/dd-HH:mm:ss padded to Constants.PRINT_GAP
+    protected Renderer time(long epoch){
+
+        int begin = buffer.length();
+
+        time(buffer, epoch);
+
+        for (int i = buffer.length() - begin; i < Constants.PRINT_GAP; i++){
+
+            buffer.append(' ');
+        }
+        return this;
+    }
+
+    // "H Hours, M Minutes, S Seconds" padded to Constants.PRINT_GAP,
+    // same parts as Duration.toHours, toMinutesPart and toSecondsPart
+    protected Renderer duration(long seconds){
+
+        return duration(seconds, Constants.PRINT_GAP);
+    }
+
+    // Duration padded to a column of its own width
+    protected Renderer duration(long seconds, int width){
+
+        int begin = buffer.length();
+
+        buffer.append(seconds / 3600).append(" Hours, ")
+                .append(seconds / 60 % 60).append(" Minutes, ")
+                .append(seconds % 60).append(" Seconds");
+
+        for (int i = buffer.length() - begin; i < width; i++){
+
+            buffer.append(' ');
+        }
+        return this;
+    }
+
+    protected Renderer text(CharSequence value){
+
+        buffer.append(value);
+        return this;
+    }
+
+    protected Renderer text(long value){
+
+        buffer.append(value);
+        return this;
+    }
+
+    protected Renderer text(char value){
+
+        buffer.append(value);
+        return this;
+    }
+
+    protected void endLine() throws IOException{
+
+        buffer.append(newLine);
+
+        if (buffer.length() >= CHUNK){
+
+            count();
+            out.append(buffer);
+            buffer.setLength(0);
+            counted = 0;
+        }
+    }
+
+    // One row of the Task Summary
+    protected void task(TaskStore store, int slot) throws IOException{
+
+        column(store.getName(slot));
+        column(store.getSize(slot).name());
+        time(store.getStart(slot));
+        time(store.getEnd(slot));
+        column(store.getDes(slot));
+        endLine();
+    }
+
+    protected void flush() throws IOException{
+
+        count();
+        out.append(buffer);
+        buffer.setLength(0);
+        counted = 0;
+        out.flush();
+    }
+
+    // Count the bytes of the text from now on, as the writer encodes it
+    protected Renderer countBytes(Charset charset){
+
+        this.charset = charset;
+        this.utf8 = charset.equals(StandardCharsets.UTF_8);
+        this.counted = buffer.length();
+        return this;
+    }
+
+    // Bytes rendered since countBytes, e.g. the offset the next line starts at
+    protected long bytes(){
+
+        count();
+        return bytes;
+    }
+
+    private void count(){
+
+        if (charset == null){
+            return;
+        }
+
+        for (int i = counted; i < buffer.length(); i++){
+
+            char c = buffer.charAt(i);
+
+            if (c < 0x80){
+
+                bytes++;
+            }else if (!utf8){
+
+                bytes += String.valueOf(c).getBytes(charset).length;
+            }else if (Character.isHighSurrogate(c)){
+
+                // The pair is one code point of four bytes
+                bytes += 4;
+                i++;
+            }else{
+                bytes += c < 0x800 ? 2 : 3;
+            }
+        }
+        counted = buffer.length();
+    }
+
+    // yyyy/MM/dd-HH:mm:ss without padding
+    protected Renderer stamp(long epoch){
+
+        time(buffer, epoch);
+        return this;
+    }
+
+    // Append yyyy/MM/dd-HH:mm:ss of an epoch second in this zone
+    private void time(StringBuilder target, long epoch){
+
+        if (epoch < offsetFrom || epoch >= offsetTo){
+
+            cacheOffset(epoch);
+        }
+
+        long local = epoch + offset;
+        long day = Math.floorDiv(local, 86400);
+        int second = Math.floorMod(local, 86400);
+
+        // Civil date of a day since 1970/01/01
+        long shifted = day + 719468;
+        long era = Math.floorDiv(shifted, 146097);
+        long doe = shifted - era * 146097;
+        long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        long mp = (5 * doy + 2) / 153;
+        int dayOfMonth = (int) (doy - (153 * mp + 2) / 5 + 1);
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+
+        if (year < 1 || year > 9999){
+
+            // Signs and wide years are left to the formatter
+            target.append(Instant.ofEpochSecond(epoch).atZone(zone)
+                            .format(Constants.FORMATTER));
+            return;
+        }
+
+        digits(target, (int) year, 4).append('/');
+        digits(target, month, 2).append('/');
+        digits(target, dayOfMonth, 2).append('-');
+        digits(target, second / 3600, 2).append(':');
+        digits(target, second / 60 % 60, 2).append(':');
+        digits(target, second % 60, 2);
+    }
+
+    private void cacheOffset(long epoch){
+
+        Instant instant = Instant.ofEpochSecond(epoch);
+
+        // Latest transition at or before the instant
+        ZoneOffsetTransition previous = rules.previousTransition(instant.plusSeconds(1));
+        ZoneOffsetTransition next = rules.nextTransition(instant);
+
+        offset = rules.getOffset(instant).getTotalSeconds();
+        offsetFrom = previous == null ? Long.MIN_VALUE : previous.toEpochSecond();
+        offsetTo = next == null ? Long.MAX_VALUE : next.toEpochSecond();
+    }
+
+    private static StringBuilder digits(StringBuilder target, int value, int count){
+
+        for (int div = count == 4 ? 1000 : 10; div > 0; div /= 10){
+
+            target.append((char) ('0' + value / div % 10));
+        }
+        return target;
+    }
+}
@@ -0,0 +1,289 @@
+package TM;
+
+// Imports for data operations
+import java.util.List;
+import java.util.Map;
+import java.util.LinkedHashMap;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+// Imports for store time value
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.TemporalAdjusters;
+
+// Rollup
+// Seconds of closed windows per calendar bucket, name and size,
+// updated whenever a window changes like TaskStats.
+// A window is cut at every midnight of the zone and each piece counts
+// for its day, its week (starting on Monday) and its month,
+// so a report reads the buckets and never the windows.
+// Only the days are saved in the rollup file, weeks and months are
+// summed up from them again when it is read.
+class Rollup{
+
+    // Periods of the buckets
+    protected static final int DAY = 0;
+    protected static final int WEEK = 1;
+    protected static final int MONTH = 2;
+
+    private static final TASK_SIZE[] SIZES = TASK_SIZE.values();
+
+    private final ZoneId zone;
+
+    // Periods which are counted, a report reading the rollup file
+    // only needs the one it prints
+    private final int first;
+    private final int last;
+
+    // Buckets of every period by the epoch day they start on
+    private final List<TreeMap<Long, Bucket>> periods = List.of(new TreeMap<>(),
+                                                            new TreeMap<>(), new TreeMap<>());
+
+    // Day of the last piece and its buckets, windows are mostly added in
+    // time order so consecutive windows usually fall on the same day
+    private long dayStart = Long.MAX_VALUE;
+    private long dayEnd = Long.MIN_VALUE;
+    private long[] keys = new long[MONTH + 1];
+
+    // Epoch day of the last cell from the rollup file and its buckets,
+    // the file has every cell of a day together
+    private long day = Long.MIN_VALUE;
+    private long[] dayKeys = new long[MONTH + 1];
+
+    protected Rollup(ZoneId zone){
+
+        this(zone, DAY, MONTH);
+    }
+
+    // Rollup with the buckets of one period only
+    protected Rollup(ZoneId zone, int period){
+
+        this(zone, period, period);
+    }
+
+    private Rollup(ZoneId zone, int first, int last){
+
+        this.zone = zone;
+        this.first = first;
+        this.last = last;
+    }
+
+    protected ZoneId getZone(){ return zone; }
+
+    // Count a closed window
+    protected void add(String name, TASK_SIZE size, long start, long end){
+
+        split(name, size, start, end, 1);
+    }
+
+    // Take a closed window out
+    protected void remove(String name, TASK_SIZE size, long start, long end){
+
+        split(name, size, start, end, -1);
+    }
+
+    protected void rename(String name, String newName){
+
+        for (TreeMap<Long, Bucket> buckets : periods){
+
+            for (Bucket bucket : buckets.values()){
+
+                long[] seconds = bucket.names.remove(name);
+
+                if (seconds != null){
+
+                    for (TASK_SIZE size : SIZES){
+
+                        bucket.add(newName, size, seconds[size.ordinal()]);
+                    }
+                }
+            }
+        }
+    }
+
+    // Seconds of a name and size on one day, as the rollup file has them
+    protected void addDay(long epochDay, String name, TASK_SIZE size, long seconds){
+
+        if (epochDay != day){
+
+            LocalDate date = LocalDate.ofEpochDay(epochDay);
+
+            for (int period = first; period <= last; period++){
+
+                dayKeys[period] = bucketOf(period, date);
+            }
+            day = epochDay;
+        }
+
+        for (int period = first; period <= last; period++){
+
+            add(period, dayKeys[period], name, size, seconds);
+        }
+    }
+
+    // Add every day of other, both count the same zone and every period
+    protected void merge(Rollup other){
+
+        for (Map.Entry<Long, Bucket> day : other.buckets(DAY).entrySet()){
+
+            for (Map.Entry<String, long[]> cell : day.getValue().names.entrySet()){
+
+                for (TASK_SIZE size : SIZES){
+
+                    long seconds = cell.getValue()[size.ordinal()];
+
+                    if (seconds != 0){
+
+                        addDay(day.getKey(), cell.getKey(), size, seconds);
+                    }
+                }
+            }
+        }
+    }
+
+    protected boolean isEmpty(){ return periods.get(first).isEmpty(); }
+
+    // Buckets of a period, oldest first
+    protected NavigableMap<Long, Bucket> buckets(int period){ return periods.get(period); }
+
+    // Epoch day a period containing the date starts on
+    protected static long bucketOf(int period, LocalDate date){
+
+        switch (period){
+            case WEEK:
+                return date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)).toEpochDay();
+            case MONTH:
+                return date.withDayOfMonth(1).toEpochDay();
+            default:
+                return date.toEpochDay();
+        }
+    }
+
+    // One piece per calendar day, day lengths follow the zone rules
+    private void split(String name, TASK_SIZE size, long start, long end, int sign){
+
+        while (start < end){
+
+            locate(start);
+
+            long pieceEnd = Math.min(end, dayEnd);
+
+            for (int period = first; period <= last; period++){
+
+                add(period, keys[period], name, size, sign * (pieceEnd - start));
+            }
+            start = pieceEnd;
+        }
+    }
+
+    private void add(int period, long key, String name, TASK_SIZE size, long seconds){
+
+        Bucket bucket = periods.get(period).computeIfAbsent(key, k -> new Bucket());
+
+        bucket.add(name, size, seconds);
+
+        if (bucket.names.isEmpty()){
+
+            periods.get(period).remove(key);
+        }
+    }
+
+    // Day which contains an epoch second
+    private void locate(long epoch){
+
+        if (epoch >= dayStart && epoch < dayEnd){
+            return;
+        }
+
+        LocalDate date = Instant.ofEpochSecond(epoch).atZone(zone).toLocalDate();
+
+        dayStart = date.atStartOfDay(zone).toEpochSecond();
+        dayEnd = date.plusDays(1).atStartOfDay(zone).toEpochSecond();
+
+        for (int period = DAY; period <= MONTH; period++){
+
+            keys[period] = bucketOf(period, date);
+        }
+    }
+
+    // Seconds of one bucket by name and size
+    protected static class Bucket{
+
+        // Seconds of every name by size ordinal, in first seen order,
+        // a name without seconds left is removed
+        private Map<String, long[]> names = new LinkedHashMap<>();
+
+        private void add(String name, TASK_SIZE size, long seconds){
+
+            if (seconds == 0){
+                return;
+            }
+
+            long[] cell = names.computeIfAbsent(name, k -> new long[SIZES.length]);
+            cell[size.ordinal()] += seconds;
+
+            for (long value : cell){
+
+                if (value != 0){
+                    return;
+                }
+            }
+            names.remove(name);
+        }
+
+        protected Set<String> getNames(){ return names.keySet(); }
+
+        protected long getTime(String name, TASK_SIZE size){
+
+            long[] cell = names.get(name);
+
+            return cell == null ? 0 : cell[size.ordinal()];
+        }
+
+        // Seconds of a name, every size
+        protected long getTime(String name){
+
+            long result = 0;
+
+            for (TASK_SIZE size : SIZES){
+
+                result += getTime(name, size);
+            }
+            return result;
+        }
+
+        // Seconds of a size, every name
+        protected long getSize(TASK_SIZE size){
+
+            long result = 0;
+
+            for (long[] cell : names.values()){
+
+                result += cell[size.ordinal()];
+            }
+            return result;
+        }
+
+        // New bucket with the seconds of both, names of this one first
+        protected Bucket plus(Bucket other){
+
+            Bucket result = new Bucket();
+
+            for (Bucket bucket : List.of(this, other)){
+
+                for (Map.Entry<String, long[]> cell : bucket.names.entrySet()){
+
+                    for (TASK_SIZE size : SIZES){
+
+                        result.add(cell.getKey(), size, cell.getValue()[size.ordinal()]);
+                    }
+                }
+            }
+            return result;
+        }
+    }
+}
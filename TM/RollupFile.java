@@ -0,0 +1,240 @@
+package TM;
+
+// Imports for files R/W
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+// Imports for data operations
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+
+// Imports for store time value
+import java.time.ZoneId;
+
+// Rollup file
+// Day buckets of the rollup next to the log, written with every snapshot
+// once a report built the rollup, so a report only reads this file.
+// The first line names the snapshot it belongs to by the size and
+// modification time of the log file:
+//   Rollup: <length> <modified> <checkpoint> <zone> <running> <days>
+// then the running windows and the cells of every day, seconds by size:
+//   <name> <size> <start>
+//   Day: <epoch day> <names>
+//   <name> <S> <M> <L> <XL> <UNDEFINED>
+// A log written without it, or edited by hand, doesn't match any more
+// and the rollup is built from the windows again.
+class RollupFile{
+
+    private static final TASK_SIZE[] SIZES = TASK_SIZE.values();
+
+    private long checkpoint;
+    private Rollup rollup;
+
+    // Running windows, closed windows are in the rollup
+    private List<String> runningNames = new ArrayList<>();
+    private List<TASK_SIZE> runningSizes = new ArrayList<>();
+    private List<Long> runningStarts = new ArrayList<>();
+
+    private RollupFile(){}
+
+    protected long getCheckpoint(){ return checkpoint; }
+
+    protected Rollup getRollup(){ return rollup; }
+
+    // Running windows up to now, in a rollup of their own
+    protected Rollup running(long now){
+
+        Rollup result = new Rollup(rollup.getZone());
+
+        for (int i = 0; i < runningNames.size(); i++){
+
+            result.add(runningNames.get(i), runningSizes.get(i), runningStarts.get(i), now);
+        }
+        return result;
+    }
+
+    // Rollup file in the directory of a log
+    protected static File of(File log){
+
+        return new File(log.getAbsoluteFile().getParentFile(), Constants.ROLLUP_FNAME);
+    }
+
+    // Size and modification time of a log file, empty if there is none
+    protected static String stamp(File log) throws IOException{
+
+        return log.exists() ? log.length() + " " + Files.getLastModifiedTime(log.toPath())
+                            : "";
+    }
+
+    // Rollup of a snapshot and its running windows, through a temp file
+    protected static void write(File file, String stamp, long checkpoint,
+                                    Rollup rollup, TaskStore store) throws IOException{
+
+        Path temp = Files.createTempFile(file.getAbsoluteFile().getParentFile().toPath(),
+                                            file.getName(), ".tmp");
+
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)){
+
+            Renderer out = new Renderer(writer);
+            Map<Long, Rollup.Bucket> days = rollup.buckets(Rollup.DAY);
+
+            out.text(Constants.ROLLUP_HEADER).text(' ').text(stamp).text(' ')
+                .text(checkpoint).text(' ').text(rollup.getZone().getId()).text(' ')
+                .text(store.running().size()).text(' ').text(days.size()).endLine();
+
+            for (int slot : store.running()){
+
+                out.column(store.getName(slot)).column(store.getSize(slot).name())
+                    .text(store.getStart(slot)).endLine();
+            }
+
+            for (Map.Entry<Long, Rollup.Bucket> day : days.entrySet()){
+
+                Rollup.Bucket bucket = day.getValue();
+
+                out.text(Constants.ROLLUP_DAY).text(' ').text(day.getKey()).text(' ')
+                    .text(bucket.getNames().size()).endLine();
+
+                for (String name : bucket.getNames()){
+
+                    out.column(name);
+
+                    for (TASK_SIZE size : SIZES){
+
+                        if (size.ordinal() > 0){
+                            out.text(' ');
+                        }
+                        out.text(bucket.getTime(name, size));
+                    }
+                    out.endLine();
+                }
+            }
+            out.flush();
+        }
+        Perf.written(Files.size(temp));
+
+        Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                                            StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Rollup file of the snapshot with this stamp,
+    // null if there is none, it belongs to another snapshot or zone, or is damaged
+    protected static RollupFile read(File file, String stamp) throws IOException{
+
+        return read(file, stamp, new Rollup(ZoneId.systemDefault()));
+    }
+
+    // Same with the buckets of one period only
+    protected static RollupFile read(File file, String stamp, int period) throws IOException{
+
+        return read(file, stamp, new Rollup(ZoneId.systemDefault(), period));
+    }
+
+    private static RollupFile read(File file, String stamp, Rollup rollup) throws IOException{
+
+        if (!file.exists() || stamp.isEmpty()){
+
+            return null;
+        }
+
+        ZoneId zone = rollup.getZone();
+        RollupFile result = new RollupFile();
+
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(),
+                                                            StandardCharsets.UTF_8)){
+
+            String line = reader.readLine();
+            String[] header = line == null ? new String[0] : line.split(" ");
+
+            if (header.length != 7 || !header[0].equals(Constants.ROLLUP_HEADER)
+                    || !stamp.equals(header[1] + " " + header[2])
+                    || !zone.getId().equals(header[4])){
+
+                return null;
+            }
+
+            Perf.read(file.length());
+
+            result.checkpoint = Long.parseLong(header[3]);
+            result.rollup = rollup;
+
+            for (int i = Integer.parseInt(header[5]); i > 0; i--){
+
+                line = next(reader);
+
+                result.runningNames.add(column(line, 0));
+                result.runningSizes.add(TASK_SIZE.valueOf(column(line, 1)));
+                result.runningStarts.add(Long.parseLong(line.substring(
+                                            2 * Constants.PRINT_GAP)));
+            }
+
+            for (int i = Integer.parseInt(header[6]); i > 0; i--){
+
+                String[] day = next(reader).split(" ");
+
+                if (day.length != 3 || !day[0].equals(Constants.ROLLUP_DAY)){
+
+                    return null;
+                }
+
+                long key = Long.parseLong(day[1]);
+
+                for (int j = Integer.parseInt(day[2]); j > 0; j--){
+
+                    line = next(reader);
+
+                    String name = column(line, 0);
+                    int at = Constants.PRINT_GAP;
+
+                    for (TASK_SIZE size : SIZES){
+
+                        int space = line.indexOf(' ', at);
+                        int end = space < 0 ? line.length() : space;
+                        long seconds = Long.parseLong(line, at, end, 10);
+
+                        if (seconds != 0){
+
+                            result.rollup.addDay(key, name, size, seconds);
+                        }
+                        at = end + 1;
+                    }
+                }
+            }
+
+            if (reader.readLine() != null){
+
+                return null;
+            }
+            return result;
+
+        }catch(IllegalArgumentException | IndexOutOfBoundsException ex){
+
+            return null;
+        }
+    }
+
+    // Next line, a file which ends early is damaged
+    private static String next(BufferedReader reader) throws IOException{
+
+        String line = reader.readLine();
+
+        if (line == null){
+
+            throw new IllegalArgumentException("Incomplete rollup file");
+        }
+        return line;
+    }
+
+    private static String column(String line, int index){
+
+        return line.substring(index * Constants.PRINT_GAP,
+                                (index + 1) * Constants.PRINT_GAP).trim();
+    }
+}
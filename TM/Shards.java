@@ -0,0 +1,569 @@
+package TM;
+
+// Imports for files R/W
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+// Imports for data operations
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Set;
+import java.util.HashSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Imports for store time value
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneId;
+
+// Shards
+// Task Summary rows kept in one file per month of their start time,
+// enabled once "shard" created the shard directory. The log file keeps
+// the running tasks and the Operation Log. A manifest lists the names,
+// windows and seconds of every shard and the time it spans, so a command
+// only loads what it reads: the shards with running windows always,
+// the current month for start, the shards of a name or a name prefix,
+// or the ones overlapping a time range. Only shards which changed are
+// written back.
+// Several shards are read and parsed on the common fork/join pool
+// unless -Dtm.sequential=true.
+// Shards are written before the manifest, which keeps the size and
+// modification time of every shard. A shard which doesn't match them,
+// e.g. after a write which stopped in between, gets its entry back
+// from its rows when the manifest is read, and a missing one is dropped.
+class Shards{
+
+    private final File dir;
+    private final File manifest;
+    private final TaskStore store;
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    // Manifest entry of every shard by month, oldest first
+    private final TreeMap<String, Entry> entries = new TreeMap<>();
+
+    // Months whose rows are all in the store
+    private final Set<String> loaded = new HashSet<>();
+
+    // Loaded months which changed since the last write
+    private final Set<String> touched = new TreeSet<>();
+
+    // Month of the last lookup
+    private long monthStart = Long.MAX_VALUE;
+    private long monthEnd = Long.MIN_VALUE;
+    private String month;
+
+    @SuppressWarnings("try")
+    protected Shards(File dir, TaskStore store) throws IOException{
+
+        this.dir = dir;
+        this.manifest = new File(dir, Constants.SHARD_MANIFEST);
+        this.store = store;
+
+        if (manifest.exists()){
+
+            try (Perf.Phase phase = Perf.phase(Perf.READ)){
+
+                readManifest();
+                verify();
+            }
+        }
+    }
+
+    protected int size(){ return entries.size(); }
+
+    // Shards with running windows, so every running window is loaded
+    protected void loadRunning() throws IOException{
+
+        List<String> months = new ArrayList<>();
+
+        for (Map.Entry<String, Entry> entry : entries.entrySet()){
+
+            if (entry.getValue().running > 0){
+
+                months.add(entry.getKey());
+            }
+        }
+        load(months);
+    }
+
+    // Shard a new window starting at this time goes to
+    protected void loadMonth(long epoch) throws IOException{
+
+        load(List.of(monthOf(epoch)));
+    }
+
+    // Shards with windows of a name
+    protected void loadName(String name) throws IOException{
+
+        List<String> months = new ArrayList<>();
+
+        for (Map.Entry<String, Entry> entry : entries.entrySet()){
+
+            if (entry.getValue().names.containsKey(name)){
+
+                months.add(entry.getKey());
+            }
+        }
+        load(months);
+    }
+
+    // Shards with windows of a name starting with prefix
+    protected void loadPrefix(String prefix) throws IOException{
+
+        List<String> months = new ArrayList<>();
+
+        for (Map.Entry<String, Entry> entry : entries.entrySet()){
+
+            for (String name : entry.getValue().names.keySet()){
+
+                if (name.startsWith(prefix)){
+
+                    months.add(entry.getKey());
+                    break;
+                }
+            }
+        }
+        load(months);
+    }
+
+    // Shards with windows between from and to, running ones reach up to now
+    protected void loadRange(long from, long to) throws IOException{
+
+        List<String> months = new ArrayList<>();
+
+        for (Map.Entry<String, Entry> entry : entries.entrySet()){
+
+            Entry shard = entry.getValue();
+
+            if (shard.minStart < to && (shard.running > 0 || shard.maxEnd > from)){
+
+                months.add(entry.getKey());
+            }
+        }
+        load(months);
+    }
+
+    protected void loadAll() throws IOException{
+
+        load(entries.keySet());
+    }
+
+    // The shard of a window changed, it is written with the next snapshot
+    protected void touch(int slot){
+
+        touched.add(monthOf(store.getStart(slot)));
+    }
+
+    protected void touchName(String name){
+
+        TaskStore.IntList windows = store.windows(name);
+
+        for (int i = 0; i < windows.size(); i++){
+
+            touch(windows.get(i));
+        }
+    }
+
+    // Every window of the store goes to a shard, for a log which is sharded now
+    protected void adopt(){
+
+        for (int slot = 0; slot < store.slots(); slot++){
+
+            if (!store.isDeleted(slot)){
+
+                String key = monthOf(store.getStart(slot));
+
+                loaded.add(key);
+                touched.add(key);
+            }
+        }
+    }
+
+    @SuppressWarnings("try")
+    private void load(Collection<String> months) throws IOException{
+
+        // Months without a shard have no rows yet
+        Set<String> missing = new TreeSet<>();
+
+        for (String key : months){
+
+            if (loaded.add(key) && entries.containsKey(key)){
+
+                missing.add(key);
+            }
+        }
+
+        if (missing.isEmpty()){
+            return;
+        }
+
+        List<Rows> parsed;
+
+        try (Perf.Phase phase = Perf.phase(Perf.READ)){
+
+            Stream<String> stream = missing.size() > 1
+                                        && !Boolean.getBoolean(Constants.SEQUENTIAL_PROPERTY)
+                                            ? missing.parallelStream() : missing.stream();
+
+            parsed = stream.map(this::read).collect(Collectors.toList());
+
+        }catch(UncheckedIOException ex){
+
+            throw ex.getCause();
+        }
+
+        // The store is only changed on this thread, in month order
+        try (Perf.Phase phase = Perf.phase(Perf.PARSE)){
+
+            for (Rows rows : parsed){
+
+                Perf.read(rows.bytes);
+
+                for (int i = 0; i < rows.count; i++){
+
+                    store.load(rows.names[i], rows.sizes[i], rows.starts[i],
+                                rows.ends[i], rows.des[i]);
+                }
+                Perf.touched(rows.count);
+            }
+        }
+    }
+
+    // Rows of one shard, runs on any thread
+    private Rows read(String key){
+
+        File file = shardFile(key);
+        List<String> lines;
+
+        try{
+
+            lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        }catch(IOException ex){
+
+            throw new UncheckedIOException(ex);
+        }
+
+        RecordParser parser = new RecordParser(zone);
+        Rows rows = new Rows(lines.size());
+
+        rows.bytes = file.length();
+
+        for (String line : lines){
+
+            if (line.trim().isEmpty() || line.equals(Constants.LABEL)){
+                continue;
+            }
+
+            if (!parser.parse(line)){
+
+                throw new RuntimeException("Invalid task record: " + line);
+            }
+
+            int i = rows.count++;
+
+            rows.names[i] = parser.name;
+            rows.sizes[i] = parser.size;
+            rows.starts[i] = parser.start;
+            rows.ends[i] = parser.end;
+            rows.des[i] = parser.des;
+        }
+        return rows;
+    }
+
+    // Write the touched shards and the manifest,
+    // a shard without windows left is removed
+    protected void write() throws IOException{
+
+        if (touched.isEmpty()){
+            return;
+        }
+
+        Map<String, TaskStore.IntList> slots = new HashMap<>();
+
+        for (String key : touched){
+
+            slots.put(key, new TaskStore.IntList());
+        }
+
+        for (int slot = 0; slot < store.slots(); slot++){
+
+            if (store.isDeleted(slot)){
+                continue;
+            }
+
+            TaskStore.IntList list = slots.get(monthOf(store.getStart(slot)));
+
+            if (list != null){
+
+                list.add(slot);
+            }
+        }
+
+        for (String key : touched){
+
+            TaskStore.IntList list = slots.get(key);
+            File file = shardFile(key);
+
+            if (list.size() == 0){
+
+                Files.deleteIfExists(file.toPath());
+                entries.remove(key);
+                continue;
+            }
+
+            File temp = new File(file.getPath() + ".tmp");
+
+            try (BufferedWriter writer = Files.newBufferedWriter(temp.toPath(),
+                                                            StandardCharsets.UTF_8)){
+
+                writer.write(Constants.LABEL + "\n");
+
+                Renderer out = new Renderer(writer);
+
+                for (int i = 0; i < list.size(); i++){
+
+                    out.task(store, list.get(i));
+                }
+                out.flush();
+            }
+            Perf.written(temp.length());
+
+            Files.move(temp.toPath(), file.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.ATOMIC_MOVE);
+
+            Entry entry = new Entry();
+
+            for (int i = 0; i < list.size(); i++){
+
+                int slot = list.get(i);
+
+                entry.add(store.getName(slot), store.getStart(slot), store.getEnd(slot));
+            }
+            entry.stamp = stamp(file);
+            entries.put(key, entry);
+        }
+        touched.clear();
+
+        writeManifest();
+    }
+
+    // Entries of shards written after the manifest, from their rows
+    private void verify() throws IOException{
+
+        Set<String> keys = new TreeSet<>(entries.keySet());
+        File[] files = dir.listFiles();
+
+        for (File file : files == null ? new File[0] : files){
+
+            String name = file.getName();
+
+            if (name.endsWith(Constants.SHARD_EXT) && !file.equals(manifest)){
+
+                keys.add(name.substring(0, name.length() - Constants.SHARD_EXT.length()));
+            }
+        }
+
+        for (String key : keys){
+
+            File file = shardFile(key);
+            Entry entry = entries.get(key);
+
+            if (!file.exists()){
+
+                entries.remove(key);
+
+            }else if (entry == null || !entry.stamp.equals(stamp(file))){
+
+                Rows rows;
+
+                try{
+
+                    rows = read(key);
+                }catch(UncheckedIOException ex){
+
+                    throw ex.getCause();
+                }
+                Perf.read(rows.bytes);
+
+                entry = new Entry();
+
+                for (int i = 0; i < rows.count; i++){
+
+                    entry.add(rows.names[i], rows.starts[i], rows.ends[i]);
+                }
+                entry.stamp = stamp(file);
+                entries.put(key, entry);
+            }
+        }
+    }
+
+    // Size and modification time of a shard
+    private static String stamp(File file) throws IOException{
+
+        return file.length() + " " + Files.getLastModifiedTime(file.toPath());
+    }
+
+    // Manifest, one block per shard:
+    //   Shard: <month> <windows> <running> <min start> <max end> <names>
+    //          <shard size> <shard modified>
+    //   <name> <windows> <seconds>
+    private void writeManifest() throws IOException{
+
+        File temp = new File(manifest.getPath() + ".tmp");
+
+        try (BufferedWriter writer = Files.newBufferedWriter(temp.toPath(),
+                                                        StandardCharsets.UTF_8)){
+
+            Renderer out = new Renderer(writer);
+
+            for (Map.Entry<String, Entry> item : entries.entrySet()){
+
+                Entry entry = item.getValue();
+
+                out.text(Constants.SHARD_HEADER).text(' ').text(item.getKey())
+                    .text(' ').text(entry.windows).text(' ').text(entry.running)
+                    .text(' ').text(entry.minStart).text(' ').text(entry.maxEnd)
+                    .text(' ').text(entry.names.size()).text(' ').text(entry.stamp)
+                    .endLine();
+
+                for (Map.Entry<String, long[]> name : entry.names.entrySet()){
+
+                    out.column(name.getKey()).text(name.getValue()[0])
+                        .text(' ').text(name.getValue()[1]).endLine();
+                }
+            }
+            out.flush();
+        }
+        Perf.written(temp.length());
+
+        Files.move(temp.toPath(), manifest.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void readManifest() throws IOException{
+
+        List<String> lines = Files.readAllLines(manifest.toPath(), StandardCharsets.UTF_8);
+        Perf.read(manifest.length());
+
+        for (int line = 0; line < lines.size(); line++){
+
+            String[] header = lines.get(line).split(" ");
+
+            // A manifest written before the stamps has 7 fields,
+            // its entries are built from the shards again
+            if ((header.length != 7 && header.length != 9)
+                    || !lines.get(line).startsWith(Constants.SHARD_HEADER)){
+
+                throw new RuntimeException("Invalid shard manifest: " + lines.get(line));
+            }
+
+            Entry entry = new Entry();
+
+            entry.windows = Integer.parseInt(header[2]);
+            entry.running = Integer.parseInt(header[3]);
+            entry.minStart = Long.parseLong(header[4]);
+            entry.maxEnd = Long.parseLong(header[5]);
+            entry.stamp = header.length == 9 ? header[7] + " " + header[8] : "";
+
+            for (int i = Integer.parseInt(header[6]); i > 0; i--){
+
+                String row = lines.get(++line);
+                int space = row.indexOf(' ', Constants.PRINT_GAP);
+
+                entry.names.put(row.substring(0, Constants.PRINT_GAP).trim(),
+                                    new long[]{
+                                        Long.parseLong(row, Constants.PRINT_GAP, space, 10),
+                                        Long.parseLong(row, space + 1, row.length(), 10)});
+            }
+            entries.put(header[1], entry);
+        }
+    }
+
+    private File shardFile(String key){
+
+        return new File(dir, key + Constants.SHARD_EXT);
+    }
+
+    // yyyy-MM of an epoch second in this zone
+    private String monthOf(long epoch){
+
+        if (epoch < monthStart || epoch >= monthEnd){
+
+            YearMonth current = YearMonth.from(Instant.ofEpochSecond(epoch).atZone(zone));
+
+            monthStart = current.atDay(1).atStartOfDay(zone).toEpochSecond();
+            monthEnd = current.plusMonths(1).atDay(1).atStartOfDay(zone).toEpochSecond();
+            month = current.toString();
+        }
+        return month;
+    }
+
+    // Manifest entry of one shard
+    private static class Entry{
+
+        private int windows = 0;
+        private int running = 0;
+        private long minStart = Long.MAX_VALUE;
+        private long maxEnd = Long.MIN_VALUE;
+
+        // Windows and closed seconds of every name
+        private Map<String, long[]> names = new LinkedHashMap<>();
+
+        // Size and modification time of the shard it was written with
+        private String stamp = "";
+
+        private void add(String name, long start, long end){
+
+            long[] cell = names.computeIfAbsent(name, k -> new long[2]);
+
+            cell[0]++;
+            windows++;
+            minStart = Math.min(minStart, start);
+
+            if (end == Constants.MIN_EPOCH){
+
+                running++;
+            }else{
+
+                cell[1] += end - start;
+                maxEnd = Math.max(maxEnd, end);
+            }
+        }
+    }
+
+    // Parsed rows of one shard
+    private static class Rows{
+
+        private int count = 0;
+        private long bytes = 0;
+
+        private String[] names;
+        private TASK_SIZE[] sizes;
+        private long[] starts;
+        private long[] ends;
+        private String[] des;
+
+        private Rows(int capacity){
+
+            names = new String[capacity];
+            sizes = new TASK_SIZE[capacity];
+            starts = new long[capacity];
+            ends = new long[capacity];
+            des = new String[capacity];
+        }
+    }
+}
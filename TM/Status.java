@@ -0,0 +1,184 @@
+package TM;
+
+// Imports for files R/W
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+// Imports for data operations
+import java.util.Map;
+import java.util.LinkedHashMap;
+
+// Status
+// Running tasks with the time elapsed since they started.
+// The log header lists every running window, so only the lines
+// before the Operation Log are read and no closed window is parsed,
+// a binary snapshot has a section of running records for the same.
+// Journal records since that snapshot are applied on top.
+class Status{
+
+    // Start time of every running task, oldest first
+    private Map<String, Long> running = new LinkedHashMap<>();
+
+    private RecordParser parser = new RecordParser();
+
+    protected void add(String name, long start){
+
+        running.put(name, start);
+    }
+
+    // Running tasks from the header of a log,
+    // false when the log was written without one
+    @SuppressWarnings("try")
+    protected boolean readHeader(File log) throws IOException{
+
+        long checkpoint = 0;
+        boolean found = false;
+
+        if (log.getName().endsWith(Constants.BINARY_EXT)){
+
+            try (Perf.Phase phase = Perf.phase(Perf.READ)){
+
+                BinarySnapshot snapshot = new BinarySnapshot(log);
+
+                checkpoint = snapshot.getCheckpoint();
+                snapshot.running(this);
+            }
+            return replayJournal(log, checkpoint);
+        }
+
+        try (Perf.Phase phase = Perf.phase(Perf.READ);
+                BufferedReader reader = Files.newBufferedReader(log.toPath(),
+                                                    StandardCharsets.UTF_8)){
+
+            String line;
+
+            while ((line = reader.readLine()) != null
+                        && !line.startsWith(Constants.OP_LOG)){
+
+                Perf.read(line.length() + 1);
+
+                if (line.startsWith(Constants.CHECKPOINT)){
+
+                    checkpoint = Journal.readCheckpoint(line);
+                }else if (line.startsWith(Constants.RUNNING)){
+
+                    found = true;
+                    readTasks(reader, Integer.parseInt(
+                                    line.substring(Constants.RUNNING.length()).trim()));
+                }
+            }
+        }
+
+        if (!found){
+
+            return false;
+        }
+        return replayJournal(log, checkpoint);
+    }
+
+    @SuppressWarnings("try")
+    private boolean replayJournal(File log, long checkpoint) throws IOException{
+
+        File journalFile = new File(log.getAbsoluteFile().getParentFile(),
+                                        Constants.JOURNAL_FNAME);
+
+        if (journalFile.exists()){
+
+            try (Perf.Phase phase = Perf.phase(Perf.JOURNAL)){
+
+                Perf.read(journalFile.length());
+
+                for (String[] record : new Journal(journalFile).read(checkpoint)){
+
+                    replay(record);
+                }
+            }
+        }
+        Perf.touched(running.size());
+        return true;
+    }
+
+    // Rows of the header: name, then start time
+    private void readTasks(BufferedReader reader, int count) throws IOException{
+
+        for (int i = 0; i < count; i++){
+
+            String line = reader.readLine();
+
+            if (line == null){
+
+                throw new RuntimeException("Invalid Log file");
+            }
+            Perf.read(line.length() + 1);
+
+            long start = parser.readTime(line, Constants.PRINT_GAP);
+
+            if (line.length() < Constants.PRINT_GAP || start == Long.MIN_VALUE){
+
+                throw new RuntimeException("Invalid running task: " + line);
+            }
+            running.put(line.substring(0, Constants.PRINT_GAP).trim(), start);
+        }
+    }
+
+    // Only what changes the running tasks
+    private void replay(String[] record){
+
+        String name = record[2];
+
+        switch (record[1]){
+            case Constants.START:
+
+                long start = parser.readTime(record[3], 0);
+
+                if (start == Long.MIN_VALUE){
+
+                    throw new RuntimeException("Invalid time: " + record[3]);
+                }
+                running.put(name, start);
+                break;
+
+            case Constants.STOP:
+            case Constants.DELETE:
+
+                running.remove(name);
+                break;
+
+            case Constants.RENAME:
+
+                if (running.containsKey(name)){
+
+                    // Keep the start order
+                    Map<String, Long> renamed = new LinkedHashMap<>();
+
+                    for (Map.Entry<String, Long> entry : running.entrySet()){
+
+                        renamed.put(entry.getKey().equals(name) ? record[3]
+                                        : entry.getKey(), entry.getValue());
+                    }
+                    running = renamed;
+                }
+                break;
+
+            default:
+                break;
+        }
+    }
+
+    protected void print(long now) throws IOException{
+
+        Renderer out = Renderer.console();
+
+        out.text(Constants.STATUS_LABEL).endLine();
+
+        for (Map.Entry<String, Long> entry : running.entrySet()){
+
+            out.column(entry.getKey()).time(entry.getValue())
+                .duration(Math.max(0, now - entry.getValue())).endLine();
+        }
+        out.flush();
+    }
+}
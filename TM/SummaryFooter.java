@@ -0,0 +1,320 @@
+package TM;
+
+// Imports for files R/W
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.zip.CRC32;
+
+// Imports for data operations
+import java.util.List;
+import java.util.Map;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+
+// Summary footer
+// Closed seconds per name, count/sum/min/max per size and the running
+// windows, written at the end of the text log with every snapshot.
+// summary and summary <name> read only this footer from the end of the
+// file instead of every row, running windows are added at the current time.
+// The last line points back to the Task Summary and the footer, counts
+// the lines of the footer and has a CRC32 from the Task Summary to the end
+// of the footer, so the totals are checked against the rows they sum up:
+//   Footer: <section offset> <footer offset> <footer lines> <crc>
+// A log edited by hand fails the CRC, a damaged footer too, and journal
+// records since the snapshot aren't in it, in all of those cases the
+// whole log is read as before.
+class SummaryFooter{
+
+    private static final TASK_SIZE[] SIZES = {TASK_SIZE.S, TASK_SIZE.M,
+                                                TASK_SIZE.L, TASK_SIZE.XL};
+
+    // Longest trailer line read back from the end
+    private static final int TRAILER = 96;
+
+    // Chunk of the Task Summary read at once for the CRC
+    private static final int CHUNK = 1 << 16;
+
+    private long checkpoint;
+
+    // Closed seconds of every name, in the order of the Task Summary
+    private Map<String, Long> totals = new LinkedHashMap<>();
+
+    // Closed windows of each size
+    private Map<TASK_SIZE, TaskStats.SizeStats> sizes = new EnumMap<>(TASK_SIZE.class);
+
+    // Start and size of every running window by name,
+    // only the latest window of a name can be running
+    private Map<String, Long> runningStarts = new LinkedHashMap<>();
+    private Map<String, TASK_SIZE> runningSizes = new LinkedHashMap<>();
+
+    private SummaryFooter(){}
+
+    protected long getCheckpoint(){ return checkpoint; }
+
+    // Footer of a store, the writer is at offset in the file, the Task Summary
+    // starts at section and crc has every byte written since
+    protected static void write(Writer writer, CRC32 crc, long section, long offset,
+                                    TaskStore store, long checkpoint) throws IOException{
+
+        StringBuilder text = new StringBuilder();
+
+        List<String> names = store.names();
+
+        text.append(Constants.FOOTER).append(' ').append(checkpoint).append(' ')
+            .append(names.size()).append(' ').append(store.running().size()).append('\n');
+
+        for (String name : names){
+
+            text.append(String.format(Constants.PRINT_FORMAT, name))
+                .append(store.getStats().getTotal(name)).append('\n');
+        }
+
+        for (TASK_SIZE size : SIZES){
+
+            TaskStats.SizeStats stats = store.sizeStats(size);
+            boolean empty = stats.getCount() == 0;
+
+            text.append(String.format(Constants.PRINT_FORMAT, size.name()))
+                .append(stats.getCount()).append(' ').append(stats.getSum()).append(' ')
+                .append(empty ? 0 : stats.getMin()).append(' ')
+                .append(empty ? 0 : stats.getMax()).append('\n');
+        }
+
+        for (int slot : store.running()){
+
+            text.append(String.format(Constants.PRINT_FORMAT, store.getName(slot)))
+                .append(String.format(Constants.PRINT_FORMAT, store.getSize(slot).name()))
+                .append(store.getStart(slot)).append('\n');
+        }
+
+        int lines = 1 + names.size() + SIZES.length + store.running().size();
+
+        writer.write(text.toString());
+        writer.flush();
+        writer.write(Constants.FOOTER_TRAILER + " " + section + " " + offset + " " + lines
+                        + " " + Long.toHexString(crc.getValue()) + "\n");
+    }
+
+    // Lines of the footer and its trailer at the end of a log,
+    // 0 if the last line isn't a trailer
+    protected static int lines(String last){
+
+        String[] trailer = last.split(" ");
+
+        if (trailer.length != 5 || !trailer[0].equals(Constants.FOOTER_TRAILER)){
+
+            return 0;
+        }
+
+        try{
+
+            return Integer.parseInt(trailer[3]) + 1;
+
+        }catch(NumberFormatException ex){
+
+            return 0;
+        }
+    }
+
+    // Footer at the end of a log, null if there is none or it is not valid
+    protected static SummaryFooter read(File log) throws IOException{
+
+        try (RandomAccessFile in = new RandomAccessFile(log, "r")){
+
+            long length = in.length();
+            int tail = (int) Math.min(TRAILER, length);
+            String last = last(in);
+
+            if (last == null){
+
+                return null;
+            }
+
+            String[] trailer = last.split(" ");
+
+            if (trailer.length != 5 || !trailer[0].equals(Constants.FOOTER_TRAILER)){
+
+                return null;
+            }
+
+            // Footer ends where the trailer line starts
+            long section = Long.parseLong(trailer[1]);
+            long offset = Long.parseLong(trailer[2]);
+            long end = length - (last.getBytes(Charset.defaultCharset()).length + 1);
+
+            if (section < 0 || offset <= section || offset >= end
+                    || end - offset > Integer.MAX_VALUE){
+
+                return null;
+            }
+
+            // Rows are only checked, the footer is kept for parsing
+            CRC32 crc = new CRC32();
+            byte[] chunk = new byte[CHUNK];
+            in.seek(section);
+
+            for (long left = offset - section; left > 0; ){
+
+                int read = (int) Math.min(chunk.length, left);
+                in.readFully(chunk, 0, read);
+                crc.update(chunk, 0, read);
+                left -= read;
+            }
+
+            byte[] footer = new byte[(int) (end - offset)];
+            in.readFully(footer);
+            crc.update(footer);
+            Perf.read(end - section + tail);
+
+            if (!Long.toHexString(crc.getValue()).equals(trailer[4])){
+
+                return null;
+            }
+            return parse(new String(footer, Charset.defaultCharset()));
+
+        }catch(IllegalArgumentException | IndexOutOfBoundsException ex){
+
+            return null;
+        }
+    }
+
+    // Offset of the footer at the end of a log, -1 if there is none,
+    // the rows end there
+    protected static long offset(File log) throws IOException{
+
+        try (RandomAccessFile in = new RandomAccessFile(log, "r")){
+
+            String last = last(in);
+            String[] trailer = last == null ? new String[0] : last.split(" ");
+
+            if (trailer.length != 5 || !trailer[0].equals(Constants.FOOTER_TRAILER)){
+
+                return -1;
+            }
+            return Long.parseLong(trailer[2]);
+
+        }catch(NumberFormatException ex){
+
+            return -1;
+        }
+    }
+
+    // Last line of a file without its line break,
+    // null if it doesn't end with one or is longer than a trailer
+    private static String last(RandomAccessFile in) throws IOException{
+
+        long length = in.length();
+        int tail = (int) Math.min(TRAILER, length);
+
+        byte[] bytes = new byte[tail];
+        in.seek(length - tail);
+        in.readFully(bytes);
+
+        String text = new String(bytes, Charset.defaultCharset());
+
+        if (!text.endsWith("\n")){
+
+            return null;
+        }
+        text = text.substring(0, text.length() - 1);
+
+        return text.substring(text.lastIndexOf('\n') + 1);
+    }
+
+    private static SummaryFooter parse(String text){
+
+        String[] lines = text.split("\n");
+        String[] header = lines[0].substring(Constants.FOOTER.length()).trim().split(" ");
+
+        if (!lines[0].startsWith(Constants.FOOTER) || header.length != 3){
+
+            return null;
+        }
+
+        SummaryFooter result = new SummaryFooter();
+        result.checkpoint = Long.parseLong(header[0]);
+
+        int names = Integer.parseInt(header[1]);
+        int running = Integer.parseInt(header[2]);
+        int line = 1;
+
+        if (lines.length != 1 + names + SIZES.length + running){
+
+            return null;
+        }
+
+        for (int i = 0; i < names; i++, line++){
+
+            result.totals.put(column(lines[line]),
+                                Long.parseLong(lines[line].substring(Constants.PRINT_GAP)));
+        }
+
+        for (TASK_SIZE size : SIZES){
+
+            String[] values = lines[line++].substring(Constants.PRINT_GAP).split(" ");
+            int count = Integer.parseInt(values[0]);
+
+            result.sizes.put(size, count == 0 ? new TaskStats.SizeStats()
+                                    : new TaskStats.SizeStats(count, Long.parseLong(values[1]),
+                                        Long.parseLong(values[2]), Long.parseLong(values[3])));
+        }
+
+        for (int i = 0; i < running; i++, line++){
+
+            String name = column(lines[line]);
+
+            result.runningSizes.put(name, TASK_SIZE.valueOf(lines[line].substring(
+                                        Constants.PRINT_GAP, 2 * Constants.PRINT_GAP).trim()));
+            result.runningStarts.put(name, Long.parseLong(
+                                        lines[line].substring(2 * Constants.PRINT_GAP)));
+        }
+        return result;
+    }
+
+    private static String column(String line){
+
+        return line.substring(0, Constants.PRINT_GAP).trim();
+    }
+
+    protected boolean hasName(String name){ return totals.containsKey(name); }
+
+    // Same as Logger.totalTime
+    protected long totalTime(String name, long now){
+
+        long time = totals.getOrDefault(name, 0L);
+        Long start = runningStarts.get(name);
+
+        if (start != null){
+
+            time += now - start;
+        }
+        return time;
+    }
+
+    protected Iterable<String> names(){ return totals.keySet(); }
+
+    // Stats of the sizes with the running windows at the current time
+    protected Map<TASK_SIZE, TaskStats.SizeStats> currentStats(long now){
+
+        Map<TASK_SIZE, TaskStats.SizeStats> result = new EnumMap<>(TASK_SIZE.class);
+
+        for (TASK_SIZE size : SIZES){
+
+            result.put(size, new TaskStats.SizeStats(sizes.get(size)));
+        }
+
+        for (Map.Entry<String, Long> entry : runningStarts.entrySet()){
+
+            TaskStats.SizeStats stats = result.get(runningSizes.get(entry.getKey()));
+
+            if (stats != null){
+
+                stats.add(now - entry.getValue());
+            }
+        }
+        return result;
+    }
+}
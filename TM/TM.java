@@ -4,33 +4,46 @@ package TM;
 import java.io.File;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.io.FileWriter;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.StringWriter;
 
 // Imports for data operations
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Arrays;
+import java.util.Map;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.NavigableMap;
+import java.util.SortedSet;
+import java.util.TreeSet;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 
 // Imports for store time value
+import java.time.Instant;
+import java.time.LocalDate;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.Duration;
 
-// Imports for manage and categorize data
-import java.util.Map;
-import java.util.Collections;
-
 
 // Main body
 public class TM{
 
     // Main function takes command line arguments and then process
+    @SuppressWarnings("try")
     public static void main(String[] args){
         
         try{
@@ -40,110 +53,496 @@ public class TM{
                 throw new IllegalArgumentException("No command line arguments provided");
             }
 
-            Logger logger = Logger.getInstance();
+            // Time the phases of this command, always in this process
+            boolean perf = args[0].equals(Constants.PERF);
 
-            // Parse arguments
-            switch (args[0].toLowerCase()){
-                case Constants.START:
-                    
-                    if (args.length != 2){
+            if (perf){
 
-                        throw new IllegalArgumentException(Constants.START 
-                                                + ": " + Constants.ERR_ARGUMENT);
-                    }else{
+                Perf.startup();
+                args = Arrays.copyOfRange(args, 1, args.length);
 
-                        if (args[1].length() > 22){
+                if (args.length == 0){
 
-                            throw new IllegalArgumentException(Constants.ERR_EXCEED);
-                        }
-                        logger.startTask(args[1]);
-                    }
-                    break;
+                    throw new IllegalArgumentException("No command line arguments provided");
+                }
+            }
 
-                case Constants.STOP:
-                    
-                    if (args.length != 2){
+            // Hand the command to a running daemon if there is one
+            boolean isDaemon = args.length == 1 
+                                && args[0].equalsIgnoreCase(Constants.DAEMON);
+            boolean isWatch = Watch.isWatch(args);
 
-                        throw new IllegalArgumentException(Constants.STOP
-                                                + ": "  + Constants.ERR_ARGUMENT);
-                    }else{
+            if (!perf && !isDaemon && !isWatch && Daemon.forward(args)){
 
-                        logger.stopTask(args[1]);
-                    }
-                    break;
+                return;
+            }
 
-                case Constants.DESCRIBE:
+            // The daemon locks the log for every group of commands itself,
+            // watch for every read
+            if (isDaemon || isWatch){
 
-                    if (args.length == 3){
+                run(args);
+            }else{
 
-                        logger.describeTask(args[1], args[2], Constants.UNDEFINED);
-                    }else if(args.length == 4){
-                        
-                        logger.describeTask(args[1], args[2], args[3].toUpperCase());
-                    }else{
-                        throw new IllegalArgumentException(Constants.DESCRIBE 
-                                                + ": " + Constants.ERR_ARGUMENT);
-                    }
+                try (LogLock lock = readOnly(args[0]) ? LogLock.shared() 
+                                                        : LogLock.exclusive()){
+                    run(args);
+                }
+            }
 
-                    break;
+            if (perf){
 
-                case Constants.SUMMARY:
+                System.out.print("\n" + Perf.report());
+            }
 
-                    if (args.length == 1){
+        }catch(Exception ex){
 
-                        logger.summaryTask();
-                    }else if (args.length == 2){
+            System.out.println(ex.getMessage());
+            System.exit(0);
+        }
+    }
 
-                        if (logger.nameRestrict(args[1].toUpperCase())){
+    // Commands which never write the log
+    // The log is created by the first command if it doesn't exist.
+    private static boolean readOnly(String command){
 
-                            logger.summaryTask(TASK_SIZE.valueOf(args[1].toUpperCase()));
-                        }else{
-                            logger.summaryTask(args[1]);
-                        }
-                    }
-                    break;
+        if (!Logger.logFile().exists()){
+
+            return false;
+        }
 
-                case Constants.SIZE:
+        switch (command.toLowerCase()){
+            case Constants.SUMMARY:
+            case Constants.EXPORT:
+            case Constants.STATUS:
+            case Constants.HISTORY:
+            case Constants.REPORT:
+            case Constants.FIND:
+                return true;
+            default:
+                return false;
+        }
+    }
 
-                    if (args.length == 3){
+    // Run one command against the loaded log
+    @SuppressWarnings("try")
+    protected static void run(String[] args) throws Exception{
 
-                        logger.sizeTask(args[1], args[2].toUpperCase());
-                    }else{
-                        throw new IllegalArgumentException(Constants.SIZE 
-                                                + ": " + Constants.ERR_ARGUMENT);
-                    }
-                    break;
+        try (Perf.Phase phase = Perf.command(args[0].toLowerCase())){
 
-                case Constants.RENAME:
+            execute(args);
+        }
+    }
 
-                    if (args.length == 3){
+    private static void execute(String[] args) throws Exception{
 
-                        logger.renameTask(args[1], args[2]);
+        // Status only reads the log header
+        if (args[0].equalsIgnoreCase(Constants.STATUS)){
 
-                    }else{
-                        throw new IllegalArgumentException(Constants.RENAME
-                                                + ": " + Constants.ERR_ARGUMENT);
-                    }
-                    break;
+            if (args.length != 1){
+
+                throw new IllegalArgumentException(Constants.STATUS 
+                                        + ": " + Constants.ERR_ARGUMENT);
+            }
+            Logger.status();
+            return;
+        }
+
+        // History seeks through the history index
+        if (args[0].equalsIgnoreCase(Constants.HISTORY)){
+
+            history(args);
+            return;
+        }
+
+        // Summaries printed until the process is stopped
+        if (Watch.isWatch(args)){
+
+            Watch.run(args);
+            return;
+        }
+
+        // Plain summaries only read the summary footer if it is valid
+        if (args[0].equalsIgnoreCase(Constants.SUMMARY) && Logger.summaryFooter(args)){
+
+            return;
+        }
 
-                case Constants.DELETE:
+        // Reports only read the rollup file if it belongs to the log
+        if (args[0].equalsIgnoreCase(Constants.REPORT) 
+                && Logger.reportRollup(reportPeriod(args))){
 
-                    if (args.length == 2){
+            return;
+        }
+
+        Logger logger = Logger.getInstance();
+
+        // Parse arguments
+        switch (args[0].toLowerCase()){
+            case Constants.START:
+                
+                if (args.length != 2){
 
-                        logger.deleteTask(args[1]);
-                    }else{
-                        throw new IllegalArgumentException(Constants.DELETE
-                                                + ": " + Constants.ERR_ARGUMENT);
+                    throw new IllegalArgumentException(Constants.START 
+                                            + ": " + Constants.ERR_ARGUMENT);
+                }else{
+
+                    if (args[1].length() > 22){
+
+                        throw new IllegalArgumentException(Constants.ERR_EXCEED);
                     }
+                    logger.startTask(args[1]);
+                }
+                break;
+
+            case Constants.STOP:
+                
+                if (args.length != 2){
+
+                    throw new IllegalArgumentException(Constants.STOP
+                                            + ": "  + Constants.ERR_ARGUMENT);
+                }else{
+
+                    logger.stopTask(args[1]);
+                }
+                break;
+
+            case Constants.DESCRIBE:
+
+                if (args.length == 3){
+
+                    logger.describeTask(args[1], args[2], Constants.UNDEFINED);
+                }else if(args.length == 4){
                     
-                    break;
-                default:
-                    throw new IllegalArgumentException(Constants.ERR_ARGUMENT);
+                    logger.describeTask(args[1], args[2], args[3].toUpperCase());
+                }else{
+                    throw new IllegalArgumentException(Constants.DESCRIBE 
+                                            + ": " + Constants.ERR_ARGUMENT);
+                }
+
+                break;
+
+            case Constants.SUMMARY:
+
+                summary(logger, args);
+                break;
+
+            case Constants.SIZE:
+
+                if (args.length == 3){
+
+                    logger.sizeTask(args[1], args[2].toUpperCase());
+                }else{
+                    throw new IllegalArgumentException(Constants.SIZE 
+                                            + ": " + Constants.ERR_ARGUMENT);
+                }
+                break;
+
+            case Constants.RENAME:
+
+                if (args.length == 3){
+
+                    logger.renameTask(args[1], args[2]);
+
+                }else{
+                    throw new IllegalArgumentException(Constants.RENAME
+                                            + ": " + Constants.ERR_ARGUMENT);
+                }
+                break;
+
+            case Constants.DELETE:
+
+                if (args.length == 2){
+
+                    logger.deleteTask(args[1]);
+                }else{
+                    throw new IllegalArgumentException(Constants.DELETE
+                                            + ": " + Constants.ERR_ARGUMENT);
+                }
+                
+                break;
+
+            case Constants.COMPACT:
+
+                if (args.length == 1){
+
+                    logger.compactLog(false);
+                }else if (args.length == 2 
+                            && args[1].equalsIgnoreCase(Constants.GZIP)){
+
+                    logger.compactLog(true);
+                }else{
+                    throw new IllegalArgumentException(Constants.COMPACT
+                                            + ": " + Constants.ERR_ARGUMENT);
+                }
+                break;
+
+            case Constants.FIND:
+
+                if (args.length == 2){
+
+                    logger.findTask(args[1]);
+                }else{
+                    throw new IllegalArgumentException(Constants.FIND
+                                            + ": " + Constants.ERR_ARGUMENT);
+                }
+                break;
+
+            case Constants.REPORT:
+
+                logger.report(reportPeriod(args));
+                break;
+
+            case Constants.EXPORT:
+
+                if (args.length == 3 && args[1].equals(Constants.FORMAT)
+                        && (args[2].equalsIgnoreCase(Constants.CSV) 
+                            || args[2].equalsIgnoreCase(Constants.JSON))){
+
+                    logger.exportTask(args[2].toLowerCase());
+                }else{
+                    throw new IllegalArgumentException(Constants.EXPORT
+                                            + ": " + Constants.ERR_ARGUMENT);
+                }
+                break;
+
+            case Constants.IMPORT:
+
+                if (args.length == 2){
+
+                    logger.importTask(args[1]);
+                }else{
+                    throw new IllegalArgumentException(Constants.IMPORT
+                                            + ": " + Constants.ERR_ARGUMENT);
+                }
+                break;
+
+            case Constants.SHARD:
+
+                if (args.length == 1){
+
+                    logger.shardLog();
+                }else{
+                    throw new IllegalArgumentException(Constants.SHARD
+                                            + ": " + Constants.ERR_ARGUMENT);
+                }
+                break;
+
+            case Constants.CONVERT:
+
+                if (args.length == 2 && (args[1].equalsIgnoreCase(Constants.BINARY)
+                                        || args[1].equalsIgnoreCase(Constants.TEXT))){
+
+                    logger.convertLog(args[1].equalsIgnoreCase(Constants.BINARY));
+                }else{
+                    throw new IllegalArgumentException(Constants.CONVERT
+                                            + ": " + Constants.ERR_ARGUMENT);
+                }
+                break;
+
+            case Constants.BATCH:
+
+                if (args.length == 2){
+
+                    Batch.run(args[1], 0);
+                }else if (args.length == 4 
+                            && args[2].equalsIgnoreCase(Constants.FLUSH)){
+
+                    Batch.run(args[1], parseCount(Constants.BATCH, args[3]));
+                }else{
+                    throw new IllegalArgumentException(Constants.BATCH
+                                            + ": " + Constants.ERR_ARGUMENT);
+                }
+                break;
+
+            case Constants.DAEMON:
+
+                if (args.length == 1){
+
+                    Daemon.serve();
+                }else if (args.length == 2 
+                            && args[1].equalsIgnoreCase(Constants.STOP)){
+
+                    // Reaching here means no daemon took the command
+                    throw new RuntimeException(Constants.ERR_NO_DAEMON);
+                }else{
+                    throw new IllegalArgumentException(Constants.DAEMON
+                                            + ": " + Constants.ERR_ARGUMENT);
+                }
+                break;
+            default:
+                throw new IllegalArgumentException(Constants.ERR_ARGUMENT);
+        }
+    }
+
+    // Positive count of an option of a command
+    private static int parseCount(String command, String value){
+
+        try{
+
+            int result = Integer.parseInt(value);
+
+            if (result > 0){
+
+                return result;
             }
-        }catch(Exception ex){
+        }catch(NumberFormatException ex){
+        }
+        throw new IllegalArgumentException(command + ": " + Constants.ERR_ARGUMENT);
+    }
 
-            System.out.println(ex.getMessage());
-            System.exit(0);
+    // history name [--limit N]
+    private static void history(String[] args) throws IOException{
+
+        int limit = 0;
+
+        if (args.length == 4 && args[2].equals(Constants.LIMIT)){
+
+            try{
+
+                limit = Integer.parseInt(args[3]);
+            }catch(NumberFormatException ex){
+
+                limit = -1;
+            }
+        }
+
+        if ((args.length != 2 && args.length != 4) || limit < 0 
+                || (args.length == 4 && limit == 0)){
+
+            throw new IllegalArgumentException(Constants.HISTORY
+                                    + ": " + Constants.ERR_ARGUMENT);
+        }
+        Logger.history(args[1], limit);
+    }
+
+    // summary [name | size] [--from time] [--to time] [--stats]
+    // summary --top N | --sort [--by total|count|avg] [--size S] [--from time] [--to time]
+    // Period of report --by day|week|month
+    private static int reportPeriod(String[] args){
+
+        if (args.length == 3 && args[1].equals(Constants.BY)
+                && Constants.PERIODS.contains(args[2].toLowerCase())){
+
+            return Constants.PERIODS.indexOf(args[2].toLowerCase());
+        }
+        throw new IllegalArgumentException(Constants.REPORT
+                                + ": " + Constants.ERR_ARGUMENT);
+    }
+
+    protected static void summary(Logger logger, String[] args) throws IOException{
+
+        String filter = null;
+        boolean stats = false;
+        long from = Long.MIN_VALUE;
+        long to = Long.MAX_VALUE;
+        boolean ranged = false;
+
+        // Ranking options
+        int top = 0;
+        boolean sort = false;
+        String by = null;
+        TASK_SIZE rankSize = null;
+
+        for (int i = 1; i < args.length; i++){
+
+            if (args[i].equals(Constants.STATS)){
+
+                stats = true;
+            }else if (args[i].equals(Constants.SORT)){
+
+                sort = true;
+            }else if (args[i].equals(Constants.TOP) && i + 1 < args.length){
+
+                top = parseCount(Constants.SUMMARY, args[++i]);
+            }else if (args[i].equals(Constants.BY) && i + 1 < args.length
+                        && Constants.RANK_KEYS.contains(args[i + 1].toLowerCase())){
+
+                by = args[++i].toLowerCase();
+            }else if (args[i].equals(Constants.SIZE_OPTION) && i + 1 < args.length
+                        && RecordParser.sizeOf(args[i + 1].toUpperCase()) != null){
+
+                rankSize = TASK_SIZE.valueOf(args[++i].toUpperCase());
+            }else if ((args[i].equals(Constants.FROM) || args[i].equals(Constants.TO))
+                        && i + 1 < args.length){
+
+                long time = logger.parseTime(args[i + 1]);
+
+                if (args[i].equals(Constants.FROM)){
+                    from = time;
+                }else{
+                    to = time;
+                }
+                ranged = true;
+                i++;
+            }else if (filter == null && !args[i].startsWith("--")){
+
+                filter = args[i];
+            }else{
+                throw new IllegalArgumentException(Constants.SUMMARY
+                                        + ": " + Constants.ERR_ARGUMENT);
+            }
+        }
+
+        if (from >= to){
+
+            throw new IllegalArgumentException(Constants.ERR_RANGE);
+        }
+
+        boolean ranking = top > 0 || sort;
+
+        // --by and --size only order names, which needs --top or --sort
+        if ((top > 0 && sort) || (ranking && (stats || filter != null))
+                || (!ranking && (by != null || rankSize != null))){
+
+            throw new IllegalArgumentException(Constants.SUMMARY
+                                    + ": " + Constants.ERR_ARGUMENT);
+        }
+
+        if (ranking){
+
+            logger.summaryTop(top, by == null ? Constants.TOTAL : by, 
+                                rankSize, from, to);
+            return;
+        }
+
+        TASK_SIZE size = null;
+        String name = null;
+
+        if (filter != null){
+
+            if (logger.nameRestrict(filter.toUpperCase())){
+
+                size = TASK_SIZE.valueOf(filter.toUpperCase());
+            }else{
+                name = filter;
+            }
+        }
+
+        if (stats){
+
+            if (filter != null){
+
+                throw new IllegalArgumentException(Constants.SUMMARY
+                                        + ": " + Constants.ERR_ARGUMENT);
+            }
+
+            if (ranged){
+                logger.summaryStats(from, to);
+            }else{
+                logger.summaryStats();
+            }
+        }else if (ranged){
+
+            logger.summaryTask(name, size, from, to);
+        }else if (size != null){
+
+            logger.summaryTask(size);
+        }else if (name != null){
+
+            logger.summaryTask(name);
+        }else{
+            logger.summaryTask();
         }
     }
 
@@ -155,10 +554,35 @@ class Constants{
     // Log file name
     protected static final String LOG_FNAME = "TM_log.txt";
 
+    // Binary snapshot, used instead of the text log whenever it exists
+    // new logs start binary with -Dtm.binary=true
+    protected static final String BINARY_FNAME = "TM_log.bin";
+    protected static final String BINARY_EXT = ".bin";
+    protected static final String BINARY_PROPERTY = "tm.binary";
+
     // log file section names
     protected static final String OP_LOG = "Operation Log:";
     protected static final String TASK_SUMMARY = "Task Summary:";
 
+    // Journal storage
+    // enabled with -Dtm.journal=true, or whenever the journal file exists
+    protected static final String JOURNAL_FNAME = "TM_log.journal";
+    protected static final String JOURNAL_PROPERTY = "tm.journal";
+    protected static final String CHECKPOINT = "Checkpoint:";
+
+    // Log header with the running tasks, read by status
+    protected static final String RUNNING = "Running:";
+
+    // Summary footer at the end of the log and its last line
+    protected static final String FOOTER = "Summary Footer:";
+    protected static final String FOOTER_TRAILER = "Footer:";
+    protected static final String JOURNAL_END = "\t#end";
+    protected static final int JOURNAL_LIMIT = 10000;
+
+    // Summaries over many windows run on every core
+    // unless -Dtm.sequential=true
+    protected static final String SEQUENTIAL_PROPERTY = "tm.sequential";
+
     // DateTime formate
     protected static final DateTimeFormatter FORMATTER 
     = DateTimeFormatter.ofPattern("yyyy/MM/dd-HH:mm:ss");
@@ -166,6 +590,7 @@ class Constants{
     // Minimum time which used to compare
     protected static final ZonedDateTime MIN_TIME 
     = ZonedDateTime.parse("2000/01/01-00:00:00", FORMATTER.withZone(ZoneId.systemDefault()));;
+    protected static final long MIN_EPOCH = MIN_TIME.toEpochSecond();
 
     // Printing tasks formats
     protected static final String PRINT_FORMAT = "%-22s";
@@ -181,6 +606,25 @@ class Constants{
                             String.format(Constants.PRINT_FORMAT, "Task Name")
                                 + String.format(Constants.PRINT_FORMAT, "Time Spent");
 
+    // Durations of a ranking are wider than other columns,
+    // "99999 Hours, 59 Minutes, 59 Seconds" still fits
+    protected static final String DURATION_FORMAT = "%-36s";
+    protected static final int DURATION_GAP = 36;
+    protected static final String TOP_LABEL = 
+                            String.format(Constants.PRINT_FORMAT, "Task Name")
+                                + String.format(Constants.DURATION_FORMAT, "Time Spent")
+                                + String.format(Constants.PRINT_FORMAT, "Windows")
+                                + String.format(Constants.DURATION_FORMAT, "Average");
+
+    protected static final String SIZE_LABEL = 
+                            String.format(Constants.PRINT_FORMAT, "Task Size")
+                                + String.format(Constants.PRINT_FORMAT, "Time Spent");
+
+    protected static final String STATUS_LABEL = 
+                            String.format(Constants.PRINT_FORMAT, "Task Name")
+                                + String.format(Constants.PRINT_FORMAT, "Start Time")
+                                + String.format(Constants.PRINT_FORMAT, "Elapsed");
+
     protected static final String UNDEFINED = "UNDEFINED";
 
     // Printing log formats
@@ -191,11 +635,106 @@ class Constants{
     protected static final String SIZE = "size";
     protected static final String RENAME = "rename";
     protected static final String DELETE = "delete";
+    protected static final String DAEMON = "daemon";
+    protected static final String BATCH = "batch";
+    protected static final String COMPACT = "compact";
+    protected static final String STATUS = "status";
+    protected static final String CONVERT = "convert";
+    protected static final String HISTORY = "history";
+    protected static final String REPORT = "report";
+    protected static final String SHARD = "shard";
+    protected static final String IMPORT = "import";
+    protected static final String FIND = "find";
+
+    // summary <prefix>* sums every name starting with the prefix
+    protected static final String WILDCARD = "*";
+
+    // Print the time of every phase after the command
+    protected static final String PERF = "--perf";
+    protected static final String EXPORT = "export";
+
+    // Summary options
+    protected static final String STATS = "--stats";
+    protected static final String TOP = "--top";
+    protected static final String SORT = "--sort";
+    protected static final String WATCH = "--watch";
+    protected static final String BY = "--by";
+    protected static final String SIZE_OPTION = "--size";
+    protected static final String TOTAL = "total";
+    protected static final String COUNT = "count";
+    protected static final String AVG = "avg";
+    protected static final List<String> RANK_KEYS = List.of(TOTAL, COUNT, AVG);
+    protected static final String FROM = "--from";
+    protected static final String TO = "--to";
+
+    // Report periods, in the order of the Rollup periods
+    protected static final String DAY = "day";
+    protected static final String WEEK = "week";
+    protected static final String MONTH = "month";
+    protected static final List<String> PERIODS = List.of(DAY, WEEK, MONTH);
+    protected static final DateTimeFormatter DAY_FORMATTER 
+    = DateTimeFormatter.ofPattern("yyyy/MM/dd");
+    protected static final DateTimeFormatter MONTH_FORMATTER 
+    = DateTimeFormatter.ofPattern("yyyy/MM");
+
+    // Rollup file next to the log, so report doesn't read the windows
+    protected static final String ROLLUP_FNAME = "TM_log.rollup";
+    protected static final String ROLLUP_HEADER = "Rollup:";
+    protected static final String ROLLUP_DAY = "Day:";
+
+    // History options
+    protected static final String LIMIT = "--limit";
+
+    // History index next to the log, with the renames it can't rebuild
+    protected static final String INDEX_FNAME = "TM_log.idx";
+    protected static final String RENAMES_FNAME = "TM_log.idx.renames";
+
+    // Convert options
+    protected static final String BINARY = "binary";
+    protected static final String TEXT = "text";
+
+    // Export options
+    protected static final String FORMAT = "--format";
+    protected static final String CSV = "csv";
+    protected static final String JSON = "json";
+
+    // Batch options
+    protected static final String STDIN = "-";
+    protected static final String FLUSH = "--flush";
+
+    // Operation Log segments
+    // enabled once "compact" created the segment directory
+    protected static final String SEGMENT_DIR = "TM_log.segments";
+    protected static final String SEGMENT_ACTIVE = "active.log";
+    protected static final String SEGMENT_PREFIX = "segment-";
+    protected static final String SEGMENT_MARKER = "compact.pending";
+    protected static final String GZIP_SUFFIX = ".gz";
+    protected static final String GZIP = "--gzip";
+    protected static final long SEGMENT_BYTES = 1 << 20;
+
+    // Task Summary shards, one file per month of the start time
+    // enabled once "shard" created the shard directory
+    protected static final String SHARD_DIR = "TM_log.shards";
+    protected static final String SHARD_MANIFEST = "manifest.txt";
+    protected static final String SHARD_EXT = ".txt";
+    protected static final String SHARD_HEADER = "Shard:";
+
+    // Daemon socket, next to the log file
+    protected static final String SOCKET_FNAME = "TM.sock";
+
+    // Cross-process lock, next to the log file
+    protected static final String LOCK_FNAME = "TM_log.lock";
 
     // Error messages
     protected static final String ERR_ARGUMENT = "Invalid command line argument";
     protected static final String ERR_NOT_RUNNING = "Task is not running";
     protected static final String ERR_TASK_RUNNING = "Task is running";
+    protected static final String ERR_NO_DAEMON = "Daemon is not running";
+    protected static final String ERR_DAEMON_RUNNING = "Daemon is already running";
+    protected static final String ERR_BATCH = "Not allowed in a batch";
+    protected static final String ERR_RANGE = "--from must be before --to";
+    protected static final String ERR_SHARDED = "Not supported for a sharded log";
+    protected static final String ERR_SHARD_BINARY = "Convert the log to text first";
     protected static final String ERR_EXCEED= "Task Name exceeds " 
                                     + PRINT_GAP + " Characters";
 
@@ -217,9 +756,14 @@ class Task{
 
     protected Task(String name){
 
+        this(name, ZonedDateTime.now());
+    }
+
+    protected Task(String name, ZonedDateTime start){
+
         taskName = name;
         taskSize = TASK_SIZE.UNDEFINED;
-        taskStart = ZonedDateTime.now();
+        taskStart = start;
         taskEnd = Constants.MIN_TIME;
         taskDes = Constants.UNDEFINED;
     }
@@ -240,7 +784,9 @@ class Task{
     protected Supplier<Integer> isRunning = () -> taskEnd.compareTo(Constants.MIN_TIME);
 
     // Stop this task
-    protected void stop(){ taskEnd = ZonedDateTime.now(); }
+    protected void stop(){ stop(ZonedDateTime.now()); }
+
+    protected void stop(ZonedDateTime end){ taskEnd = end; }
 
     // Describle this task
     protected void describe(String description, TASK_SIZE size){
@@ -259,6 +805,10 @@ class Task{
     protected Supplier<String> getName = () -> taskName;
     protected Predicate<TASK_SIZE> isSize = size -> taskSize.equals(size);
 
+    protected TASK_SIZE getSize(){ return taskSize; }
+    protected ZonedDateTime getStart(){ return taskStart; }
+    protected ZonedDateTime getEnd(){ return taskEnd; }
+
     protected Duration summaryTime(){
 
         if (taskEnd.compareTo(Constants.MIN_TIME) == 0){
@@ -290,176 +840,298 @@ class Logger{
     private static Logger instance;
     
     private List<String> operationLog = new ArrayList<>();
-    private List<Task> taskSummary = new ArrayList<>();
 
-    // Store cleaned tasks
-    Map<String, Duration> map = new HashMap<>();
+    // Every time window, with its name index and stats
+    private TaskStore taskSummary = new TaskStore();
 
     // file obj
-    private File file = new File(Constants.LOG_FNAME);
+    private File file;
 
-    // Private constructor
-    private Logger(){
+    // Binary snapshot instead of the text layout
+    private boolean binary;
 
-        try{
+    // Task row parser
+    private RecordParser parser = new RecordParser();
 
-            if(!file.exists()){
+    // Journal of mutations since the last snapshot,
+    // null when the log file is rewritten on every command
+    private Journal journal;
 
-                // Initialize log file
-                createFile(file);
-            }else{
+    // Snapshot checkpoint read from the log header
+    private long checkpoint = 0;
 
-                // Read lines
-                readFile(file);
-            }
+    // Changes which are not written yet
+    private boolean deferred = false;
+    private boolean dirty = false;
+    private List<String[]> pending = new ArrayList<>();
+    private List<String> pendingOps = new ArrayList<>();
 
-        }catch(Exception ex){
+    // Renames for the history index, recorded once their lines are written
+    private List<String[]> pendingRenames = new ArrayList<>();
 
-            System.out.println(ex.getMessage());
-            System.exit(0);
-        }
-    }
+    // Offsets of the lines of the last text snapshot by name, for the
+    // history index, null if it has none or they went to the index
+    private Map<String, IndexFile.Postings> logPostings;
 
-    // Helper method to initialize log file content
-    private static void createFile(File file) throws IOException {
+    // Segmented Operation Log, null until the log is compacted once
+    private OperationHistory history;
 
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
-            writer.write(Constants.OP_LOG + "\n");
-            writer.write("\n"); // Empty content for Operation Log
-            writer.write(Constants.TASK_SUMMARY + "\n");
-            writer.write(Constants.LABEL + "\n");
-            writer.write("\n"); // Empty content for Task Summary
-        }
+    // Task Summary in monthly shards, null until the log is sharded once
+    private Shards shards;
+
+    // Log and journal files as this Logger last read or wrote them
+    private String stamp;
+
+    // Log file alone as this Logger last read or wrote it,
+    // the rollup file belongs to the snapshot with this stamp
+    private String snapshot;
+
+    // Private constructor
+    private Logger() throws IOException{
+
+        this(logFile());
     }
 
-    // Section1: Read file into objects
-    private void readFile(File file) throws IOException {
+    // The binary snapshot if there is one, else the text log
+    protected static File logFile(){
 
-        List<String> lines = Files.readAllLines(Paths.get(file.toURI()));
+        File binary = new File(Constants.BINARY_FNAME);
+        File text = new File(Constants.LOG_FNAME);
 
-        if (lines.size() < 2) {
+        if (binary.exists() 
+                || (!text.exists() && Boolean.getBoolean(Constants.BINARY_PROPERTY))){
 
-            throw new RuntimeException("Invalid Log file");
+            return binary;
         }
+        return text;
+    }
 
-        // Test if log is valid
-        int isValidLog = 0;
-
-        boolean isOpLog = false;
-        boolean isTaskSummary = false;
+    // Logger of a log file other than the default one, 
+    // benchmarks load their generated logs with this
+    // A log which can't be read throws, main prints why, the daemon and
+    // summary --watch keep running.
+    @SuppressWarnings("try")
+    protected Logger(File file) throws IOException{
 
-        for (String line : lines) {
+        this.file = file;
+        this.binary = file.getName().endsWith(Constants.BINARY_EXT);
 
-            if (line.startsWith(Constants.OP_LOG)) {
-                
-                isValidLog++;
-                isTaskSummary = false;
-                isOpLog = true;
-                continue;
-            } else if (line.startsWith(Constants.TASK_SUMMARY)) {
-                continue;
-            } else if (line.equals(Constants.LABEL)){
+        if(!file.exists()){
 
-                isValidLog++;
-                isOpLog = false;
-                isTaskSummary = true;
-                continue;
-            }
+            // Initialize log file
+            try (Perf.Phase phase = Perf.phase(Perf.WRITE)){
 
-            if (isOpLog && !line.trim().isEmpty()){
+                if (binary){
 
-                operationLog.add(line);
-            }else if (isTaskSummary && !line.trim().isEmpty()){
+                    printBinary(file);
+                }else{
 
-                readTask(line);
+                    createFile(file);
+                    Perf.written(file.length());
+                }
             }
-        }
+        }else if (binary){
 
-        if (isValidLog != 2) {
+            readBinary(file);
+        }else{
 
-                throw new RuntimeException("""
-                                            Invalid Log file.
-                                            A good log file should contain
-                                            Operation Log and Task Summary""");
+            // Read lines
+            readFile(file);
         }
 
-        // Initial clean data
-        for (Task task : taskSummary){
+        // Operation Log segments, never read while loading
+        if (segmentDir().isDirectory()){
 
-            if (map.containsKey(task.getName.get())){
+            history = new OperationHistory(segmentDir(), file);
 
-                Duration time = map.get(task.getName.get())
-                                    .plus(task.summaryTime());
+            // The first compact stopped before its snapshot, a command which
+            // may write cleans up after it and a reader only reads past it
+            boolean undone = LogLock.isExclusive() ? !history.recover()
+                                                    : history.isUndone();
+            if (undone){
 
-                map.put(task.getName.get(), time);
-            }else{
-                map.put(task.getName.get(), task.summaryTime());
+                history = null;
             }
         }
-    }
 
-    // Helper function to read all tasks from log
-    private void readTask(String line){
+        // Shards are loaded by the commands which read them,
+        // running windows are always loaded for the log header
+        if (shardDir().isDirectory()){
+
+            shards = new Shards(shardDir(), taskSummary);
+            shards.loadRunning();
+        }
+
+        // Journal records and commands change the snapshot from here on
+        snapshot = RollupFile.stamp(file);
+        taskSummary.trackChanges();
 
-        int len = line.length();
+        // Replay journal on top of the snapshot,
+        // a sharded log writes the shards instead
+        File journalFile = new File(file.getAbsoluteFile().getParentFile(), 
+                                        Constants.JOURNAL_FNAME);
 
-        List<String> segments = new ArrayList<>();
+        if (shards == null && (journalFile.exists() 
+                || Boolean.getBoolean(Constants.JOURNAL_PROPERTY))){
 
-        for (int i = 0; i < len; i += Constants.PRINT_GAP){
+            journal = new Journal(journalFile);
 
-            int end = Math.min(i + Constants.PRINT_GAP, len);
+            try (Perf.Phase phase = Perf.phase(Perf.JOURNAL)){
 
-            // Extract the substring
-            String segment = line.substring(i, end);
+                Perf.read(journalFile.length());
 
-            segment = segment.replaceAll("\\s+$", "");
+                for (String[] record : journal.load(checkpoint)){
 
-            // Add the segment to the list
-            segments.add(segment);
+                    replay(record);
+                }
+            }
         }
+        stamp = stamp();
+    }
 
-        ZonedDateTime startTime = ZonedDateTime.parse(segments.get(2), 
-                                    Constants.FORMATTER.withZone(ZoneId.systemDefault()));
-        ZonedDateTime endTime = ZonedDateTime.parse(segments.get(3), 
-                                    Constants.FORMATTER.withZone(ZoneId.systemDefault()));
+    // Helper method to initialize log file content
+    private static void createFile(File file) throws IOException {
 
-        Task task = new Task(segments.get(0), 
-                                TASK_SIZE.valueOf(segments.get(1)), 
-                                    startTime, endTime, segments.get(4));
-        taskSummary.add(task);
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+            writer.write(Constants.RUNNING + " 0\n");
+            writer.write(Constants.OP_LOG + "\n");
+            writer.write("\n"); // Empty content for Operation Log
+            writer.write(Constants.TASK_SUMMARY + "\n");
+            writer.write(Constants.LABEL + "\n");
+            writer.write("\n"); // Empty content for Task Summary
+        }
     }
 
-    // Section2: Write logs to file
-    private Task findTask(String name){
+    // Section1: Read file into objects
+    @SuppressWarnings("try")
+    private void readFile(File file) throws IOException {
+
+        List<String> lines;
+
+        try (Perf.Phase phase = Perf.phase(Perf.READ)){
+
+            lines = Files.readAllLines(Paths.get(file.toURI()));
+            Perf.read(file.length());
+        }
+
+        if (lines.size() < 2) {
+
+            throw new RuntimeException("Invalid Log file");
+        }
+
+        // Test if log is valid
+        int isValidLog = 0;
+
+        boolean isOpLog = false;
+        boolean isTaskSummary = false;
+
+        // Running task rows of the header, the Task Summary has them too
+        int header = 0;
+
+        // The trailer counts the lines of the summary footer after the rows
+        int rows = lines.size() - SummaryFooter.lines(lines.get(lines.size() - 1));
+
+        try (Perf.Phase phase = Perf.phase(Perf.PARSE)){
+
+            for (String line : lines.subList(0, rows)) {
+
+                if (header > 0){
+
+                    header--;
+                    continue;
+                }
+
+                if (!isOpLog && !isTaskSummary 
+                        && line.startsWith(Constants.CHECKPOINT)){
+
+                    checkpoint = Journal.readCheckpoint(line);
+                    continue;
+                }
+
+                if (!isOpLog && !isTaskSummary 
+                        && line.startsWith(Constants.RUNNING)){
+
+                    header = Integer.parseInt(
+                                line.substring(Constants.RUNNING.length()).trim());
+                    continue;
+                }
+
+                if (line.startsWith(Constants.OP_LOG)) {
+                
+                    isValidLog++;
+                    isTaskSummary = false;
+                    isOpLog = true;
+                    continue;
+                } else if (line.startsWith(Constants.TASK_SUMMARY)) {
+                    continue;
+                } else if (line.equals(Constants.LABEL)){
+
+                    isValidLog++;
+                    isOpLog = false;
+                    isTaskSummary = true;
+                    continue;
+                }
 
-        Task result = null;
 
-        // Find latest record
-        for (Task task : taskSummary){
+                if (isOpLog && !line.trim().isEmpty()){
 
-            if (task.hasTask.test(name)){
+                    operationLog.add(line);
+                }else if (isTaskSummary && !line.trim().isEmpty()){
 
-                result = task;
+                    readTask(line);
+                }
             }
+            Perf.touched(taskSummary.count());
         }
 
-        return result; // Null if not found
+        if (isValidLog != 2) {
+
+                throw new RuntimeException("""
+                                            Invalid Log file.
+                                            A good log file should contain
+                                            Operation Log and Task Summary""");
+        }
     }
 
-    // Name can't be S/M/L/XL or UNDEFINED
-    // so this is a test
-    protected boolean nameRestrict(String name){
+    // Read a binary snapshot, strings are only decoded once
+    @SuppressWarnings("try")
+    private void readBinary(File file) throws IOException{
 
-        try {
+        BinarySnapshot snapshot;
 
-            TASK_SIZE.valueOf(name.toUpperCase());
+        try (Perf.Phase phase = Perf.phase(Perf.READ)){
 
-        } catch (IllegalArgumentException e) {
-            
-            return false;
+            snapshot = new BinarySnapshot(file);
+            Perf.read(file.length());
         }
 
-        return true;
+        try (Perf.Phase phase = Perf.phase(Perf.PARSE)){
+
+            checkpoint = snapshot.getCheckpoint();
+            snapshot.operations(operationLog);
+            snapshot.tasks(taskSummary);
+            Perf.touched(snapshot.records());
+        }
+    }
+
+    // Helper function to read all tasks from log
+    private void readTask(String line){
+
+        if (!parser.parse(line)){
+
+            throw new RuntimeException("Invalid task record: " + line);
+        }
+
+        taskSummary.add(parser.name, parser.size, 
+                            parser.start, parser.end, parser.des);
+    }
+
+    // Section2: Write logs to file
+    // Name can't be S/M/L/XL or UNDEFINED
+    // so this is a test
+    protected boolean nameRestrict(String name){
+
+        return RecordParser.sizeOf(name.toUpperCase()) != null;
     }
     // Operations:
     // Operate start
@@ -472,34 +1144,60 @@ class Logger{
                                         It can't be one of the following: 
                                         S, M, L, XL, or UNDEFINED""");
         }
-        Task target = findTask(name);
+        long now = now();
+
+        if (shards != null){
+
+            shards.loadMonth(now);
+        }
+        int target = taskSummary.find(name);
 
-        if(target != null){
+        if(target != TaskStore.NONE){
 
-            if (target.isRunning.get() == 0){
+            if (taskSummary.isRunning(target)){
 
                 throw new RuntimeException(Constants.ERR_TASK_RUNNING);
             }
         }
 
         // Add task to our record
-        target = new Task(name);
-        taskSummary.add(target);
+        Perf.touched(1);
+        int slot = taskSummary.add(name, TASK_SIZE.UNDEFINED, now, 
+                                    Constants.MIN_EPOCH, Constants.UNDEFINED);
+
+        if (shards != null){
+
+            shards.touch(slot);
+        }
 
         // Print log message
-        printLog(Constants.START, name);
+        printLog(Constants.START, name, taskSummary.formatTime(now));
     }
 
     // Operate Stop
     protected void stopTask(String name) throws IOException{
 
-        Task target = findTask(name);
+        int target = taskSummary.find(name);
+        long now = now();
+
+        // Only running windows are loaded up front, the error needs the others
+        if (shards != null && (target == TaskStore.NONE || !taskSummary.isRunning(target))){
+
+            shards.loadName(name);
+            target = taskSummary.find(name);
+        }
+
+        if(target != TaskStore.NONE){
+
+            if (taskSummary.isRunning(target)){
 
-        if(target != null){
+                taskSummary.stop(target, now);
+                Perf.touched(1);
 
-            if (target.isRunning.get() == 0){
+                if (shards != null){
 
-                target.stop();
+                    shards.touch(target);
+                }
             }else{
 
                 throw new RuntimeException(Constants.ERR_NOT_RUNNING); 
@@ -510,7 +1208,7 @@ class Logger{
         }
 
         // Print log message
-        printLog(Constants.STOP, name);
+        printLog(Constants.STOP, name, taskSummary.formatTime(now));
 
     }
 
@@ -519,242 +1217,1370 @@ class Logger{
                                     String description, 
                                         String size) throws IOException{
 
-        Task target = findTask(name);
-        if (target == null){
+        loadName(name);
+
+        if (!taskSummary.hasName(name)){
 
             throw new RuntimeException("Couldn't find " + name);
         }
         
-        for (Task task : taskSummary){
-
-            if (task.hasTask.test(name)){
-
-                try {
+        try {
 
-                    TASK_SIZE s = TASK_SIZE.valueOf(size);
-                    task.describe(description, s);
+            setDescription(name, description, TASK_SIZE.valueOf(size));
 
-                } catch (IllegalArgumentException e) {
-                    
-                    System.out.println("Invalid size: " + size);
-                    System.exit(0);
-                }
-            }
+        } catch (IllegalArgumentException e) {
+            
+            throw new IllegalArgumentException("Invalid size: " + size);
         }
-        printLog(Constants.DESCRIBE, name);
+        printLog(Constants.DESCRIBE, name, description, size);
     }
 
     // Operate Size
     protected void sizeTask(String name, String size) throws IOException{
         
-        Task target = findTask(name);
-        if (target == null){
+        loadName(name);
+
+        if (!taskSummary.hasName(name)){
 
             throw new RuntimeException("Couldn't find " + name);
         }
 
-        // Change size for every time window
-        for (Task task : taskSummary){
-
-            if (task.hasTask.test(name)){
-
-                try {
+        try {
 
-                    TASK_SIZE s = TASK_SIZE.valueOf(size);
-                    task.size(s);
+            setSize(name, TASK_SIZE.valueOf(size));
 
-                } catch (IllegalArgumentException e) {
-                    
-                    System.out.println("Invalid size: " + size);
-                    System.exit(0);
-                }
-            }
+        } catch (IllegalArgumentException e) {
+            
+            throw new IllegalArgumentException("Invalid size: " + size);
         }
-        printLog(Constants.SIZE, name);
+        printLog(Constants.SIZE, name, size);
     }
 
     // Operate Rename
     protected void renameTask(String name, String newName) throws IOException{
 
-        Task target = findTask(name);
-        if (target == null){
+        loadName(name);
+        loadName(newName);
+
+        if (!taskSummary.hasName(name)){
 
             throw new RuntimeException("Couldn't find " + name);
         }
 
-        for (Map.Entry<String, Duration> entry : map.entrySet()){
+        if (taskSummary.hasName(newName)){
 
-            if (entry.getKey().equals(newName)){
+            throw new RuntimeException("Name: " + newName + " already exists");
+        }
 
-                throw new RuntimeException("Name: " + newName + " already exists");
-            }
+        Perf.touched(taskSummary.windows(name).size());
+        touchName(name);
+        taskSummary.rename(name, newName);
+        pendingRenames.add(new String[]{name, newName});
+        printLog(Constants.RENAME, name, newName);
+    }
+
+    // Operation Delete
+    protected void deleteTask(String name) throws IOException{
+
+        loadName(name);
+
+        if (!taskSummary.hasName(name)){
+
+            throw new RuntimeException("Couldn't find " + name);
+        }
+
+        Perf.touched(taskSummary.windows(name).size());
+        touchName(name);
+        taskSummary.remove(name);
+        printLog(Constants.DELETE, name);
+    }
+
+    // Describe every time window
+    private void setDescription(String name, String description, TASK_SIZE size){
+
+        TaskStore.IntList windows = taskSummary.windows(name);
+        Perf.touched(windows.size());
+        touchName(name);
+
+        for (int i = 0; i < windows.size(); i++){
+
+            taskSummary.setDes(windows.get(i), description);
+            taskSummary.setSize(windows.get(i), size);
         }
+    }
 
-        // Change name for every time window
-        for (Task task : taskSummary){
+    // Change size for every time window
+    private void setSize(String name, TASK_SIZE size){
 
-            if (task.hasTask.test(name)){
+        TaskStore.IntList windows = taskSummary.windows(name);
+        Perf.touched(windows.size());
+        touchName(name);
 
-                task.rename(newName);
-            }
+        for (int i = 0; i < windows.size(); i++){
+
+            taskSummary.setSize(windows.get(i), size);
         }
-        printLog(Constants.RENAME, name);
     }
 
-    // Operation Delete
-    protected void deleteTask(String name) throws IOException{
+    // Records another process appended to the journal since this Logger
+    // read it, only called while holding the log lock
+    protected void replayJournal(List<String[]> records) throws IOException{
 
-        Task target = findTask(name);
-        if (target == null){
+        for (String[] record : records){
 
-            throw new RuntimeException("Couldn't find " + name);
+            replay(record);
         }
+        stamp = stamp();
+    }
 
-        // Delete every time window
-        taskSummary.removeIf(t -> t.getName.get().equals(name));
+    // Apply one journal record: 
+    // operation message, operation, name, then its arguments
+    private void replay(String[] record){
 
-        printLog(Constants.DELETE, name);
+        // With segments the operation already went to the active segment
+        if (history == null){
+
+            operationLog.add(record[0]);
+        }
+
+        String name = record[2];
+
+        switch (record[1]){
+            case Constants.START:
+
+                taskSummary.add(name, TASK_SIZE.UNDEFINED, parseTime(record[3]), 
+                                    Constants.MIN_EPOCH, Constants.UNDEFINED);
+                break;
+
+            case Constants.STOP:
+
+                taskSummary.stop(taskSummary.find(name), parseTime(record[3]));
+                break;
+
+            case Constants.DESCRIBE:
+
+                setDescription(name, record[3], TASK_SIZE.valueOf(record[4]));
+                break;
+
+            case Constants.SIZE:
+
+                setSize(name, TASK_SIZE.valueOf(record[3]));
+                break;
+
+            case Constants.RENAME:
+
+                taskSummary.rename(name, record[3]);
+                break;
+
+            case Constants.DELETE:
+
+                taskSummary.remove(name);
+                break;
+
+            default:
+                throw new RuntimeException("Invalid journal record: " + record[1]);
+        }
+    }
+
+    protected long parseTime(String time){
+
+        long epoch = parser.readTime(time, 0);
+
+        if (epoch == Long.MIN_VALUE){
+
+            throw new RuntimeException("Invalid time: " + time);
+        }
+        return epoch;
+    }
+
+    protected static long now(){
+
+        return Instant.now().getEpochSecond();
+    }
+
+    // Shards which a command reads, nothing to do without shards
+    private void loadName(String name) throws IOException{
+
+        if (shards != null){
+
+            shards.loadName(name);
+        }
+    }
+
+    private void loadPrefix(String prefix) throws IOException{
+
+        if (shards != null){
+
+            shards.loadPrefix(prefix);
+        }
+    }
+
+    private void loadRange(long from, long to) throws IOException{
+
+        if (shards != null){
+
+            shards.loadRange(from, to);
+        }
+    }
+
+    private void loadAll() throws IOException{
+
+        if (shards != null){
+
+            shards.loadAll();
+        }
+    }
+
+    // Windows of a name changed, their shards are written with the next snapshot
+    private void touchName(String name){
+
+        if (shards != null){
+
+            shards.touchName(name);
+        }
     }
 
     // Operate Summary all
-    // Using map to calculate multiple time windows 
-    // with same name.
-    protected void summaryTask(){
+    // Totals are kept per name, 
+    // only running windows are computed here.
+    protected void summaryTask() throws IOException{
+
+        loadAll();
 
         // Print here
-        System.out.println(Constants.SUM_LABEL);
-        for (Map.Entry<String, Duration> entry : map.entrySet()){
+        Renderer out = Renderer.console();
 
-            Duration timeDifference = entry.getValue();
+        out.text(Constants.SUM_LABEL).endLine();
+        for (String name : taskSummary.names()){
 
-            System.out.println(String.format(Constants.PRINT_FORMAT, entry.getKey())
-                                + String.format(Constants.PRINT_FORMAT, 
-                                    timeConverter(timeDifference)));
+            out.column(name).duration(totalTime(name)).endLine();
         }
-        System.out.print("\n");
-        System.out.println(computeStats());
+        out.endLine();
+        out.text(computeStats()).endLine();
+        out.flush();
     }
     // Operate summary with Task name argument
-    protected void summaryTask(String name){
+    protected void summaryTask(String name) throws IOException{
+
+        loadName(name);
+
+        // A task may be named like a prefix itself
+        if (!taskSummary.hasName(name) && name.endsWith(Constants.WILDCARD)){
 
-        Task target = findTask(name);
+            findTask(name.substring(0, name.length() - Constants.WILDCARD.length()));
+            return;
+        }
 
-        if (target == null){
+        if (!taskSummary.hasName(name)){
 
             throw new RuntimeException("Couldn't find " + name);
         }
 
-        System.out.println(Constants.SUM_LABEL);
+        Renderer out = Renderer.console();
+
+        out.text(Constants.SUM_LABEL).endLine();
+        out.column(name).duration(totalTime(name)).endLine();
+        out.flush();
+    }
+    // Operate find <prefix> and summary <prefix>*
+    // Matching names come from the sorted name index, in name order
+    protected void findTask(String prefix) throws IOException{
+
+        loadPrefix(prefix);
+
+        List<String> matches = taskSummary.namesWithPrefix(prefix);
+
+        if (matches.isEmpty()){
+
+            throw new RuntimeException("Couldn't find " + prefix + Constants.WILDCARD);
+        }
+
+        Renderer out = Renderer.console();
+
+        out.text(Constants.SUM_LABEL).endLine();
+        for (String name : matches){
 
-        System.out.println(String.format(Constants.PRINT_FORMAT, name)
-                            + String.format(Constants.PRINT_FORMAT, 
-                                timeConverter(map.get(name))));
+            out.column(name).duration(totalTime(name)).endLine();
+        }
+        out.flush();
     }
     // Operate summary with Size argument
-    protected void summaryTask(TASK_SIZE size){
+    protected void summaryTask(TASK_SIZE size) throws IOException{
+
+        loadAll();
 
-        List<String> viewed = new ArrayList<>();
+        Renderer out = Renderer.console();
 
-        System.out.println(Constants.SUM_LABEL);
+        out.text(Constants.SUM_LABEL).endLine();
+        for (String name : taskSummary.getStats().names(size)){
 
-        for (Task task : taskSummary){
+            out.column(name).duration(totalTime(name)).endLine();
+        }
+        out.flush();
+    }
 
-            if (task.isSize.test(size)){
+    // Seconds spent on a name, including its running window
+    private long totalTime(String name){
 
-                if (!viewed.contains(task.getName.get())){
+        long time = taskSummary.getStats().getTotal(name);
+        int latest = taskSummary.find(name);
 
-                    System.out.println(String.format(Constants.PRINT_FORMAT, 
-                                                        task.getName.get())
-                    + String.format(Constants.PRINT_FORMAT, 
-                                timeConverter(map.get(task.getName.get())))); 
+        if (latest != TaskStore.NONE && taskSummary.isRunning(latest)){
 
-                    viewed.add(task.getName.get());
-                }               
-            }
+            time += taskSummary.summaryTime(latest, now());
         }
+        return time;
     }
 
-    private String computeStats(){
+    // Running windows, only the latest window of a name can be running
+    private List<Integer> runningTasks(){
 
-        List<TASK_SIZE> sizes = new ArrayList<>(Arrays.asList(
-                                    TASK_SIZE.S, TASK_SIZE.M, 
-                                    TASK_SIZE.L, TASK_SIZE.XL));
+        return new ArrayList<>(taskSummary.running());
+    }
 
-        
-        String result = "";
+    protected String computeStats(){
 
-        for (TASK_SIZE size : sizes){
+        return computeStats(currentStats());
+    }
 
-            int count = 0;
+    protected static String computeStats(Map<TASK_SIZE, TaskStats.SizeStats> stats){
 
-            List<Duration> durations = new ArrayList<>();
-            Duration time = Duration.ZERO;
-            for (Task task : taskSummary){
+        StringBuilder result = new StringBuilder();
 
-                if (task.isSize.test(size)){
+        for (TASK_SIZE size : stats.keySet()){
 
-                    durations.add(task.summaryTime());
-                    time = time.plus(task.summaryTime());
-                    count++;           
-                }
-            }
+            TaskStats.SizeStats sizeStats = stats.get(size);
+
+            int count = sizeStats.getCount();
 
             if (count >= 2){
 
-                Duration min = Collections.min(durations);
-                Duration max = Collections.max(durations);
-                long averageSeconds = time.getSeconds() / durations.size();
+                Duration min = Duration.ofSeconds(sizeStats.getMin());
+                Duration max = Duration.ofSeconds(sizeStats.getMax());
+                long averageSeconds = sizeStats.getSum() / count;
                 Duration avg = Duration.ofSeconds(averageSeconds);
 
-                result += size.toString() + ": \n"
-                            + "Min: " + timeConverter(min) + "\n" 
-                            + "Max: " + timeConverter(max) + "\n"
-                            + "Avg: " + timeConverter(avg) + "\n\n";  
+                result.append(size.toString()).append(": \n")
+                        .append("Min: ").append(timeConverter(min)).append("\n")
+                        .append("Max: ").append(timeConverter(max)).append("\n")
+                        .append("Avg: ").append(timeConverter(avg)).append("\n\n");
             }
             
         }
-        return result;
+        return result.toString();
     }
 
-    private String timeConverter(Duration timeDifference){
+    // Operate summary --stats
+    // Quantiles come from the histogram of each size,
+    // min, max and avg are exact.
+    protected void summaryStats() throws IOException{
 
-        return timeDifference.toHours() + " Hours, " 
-                        + timeDifference.toMinutesPart() + " Minutes, " 
-                        + timeDifference.toSecondsPart() + " Seconds";
+        loadAll();
+        System.out.print(statsReport(currentStats()));
     }
 
-    private void printHelper(String msg) throws IOException{
+    // Operate summary --stats with --from/--to
+    protected void summaryStats(long from, long to) throws IOException{
 
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
-            writer.write("Operation Log:\n");
-            for (String line : operationLog) {
+        loadRange(from, to);
 
-                writer.write(line);
-                writer.write("\n");
+        Aggregator.Result result = new Aggregator(taskSummary, now(), from, to, null)
+                                        .run(taskSummary.overlapping(from, to));
+
+        System.out.print(statsReport(result.getSizes()));
+    }
+
+    // Operate summary --top/--sort
+    // Names with the most time, windows or average time per window first,
+    // top 0 orders every name. Without a range the totals come from the
+    // stats, of every size or of one, otherwise from one pass of the Aggregator.
+    protected void summaryTop(int top, String by, TASK_SIZE size, long from, long to)
+                                throws IOException{
+
+        loadRange(from, to);
+
+        int names = taskSummary.nameCount();
+
+        long[] totals = new long[names];
+        long[] counts = new long[names];
+        boolean[] present = new boolean[names];
+
+        if (size == null && from == Long.MIN_VALUE && to == Long.MAX_VALUE){
+
+            for (int id = 0; id < names; id++){
+
+                String name = taskSummary.nameOf(id);
+
+                if (name != null){
+
+                    totals[id] = totalTime(name);
+                    counts[id] = taskSummary.windows(name).size();
+                    present[id] = counts[id] > 0;
+                }
             }
-            writer.write(msg + "\n");
-            writer.write("\n");
-            writer.write("Task Summary:\n");
-            writer.write(Constants.LABEL + "\n");
-            for (Task task : taskSummary) {
+        }else if (from == Long.MIN_VALUE && to == Long.MAX_VALUE){
 
-                writer.write(task.printTask());
-                writer.write("\n");
+            TaskStats stats = taskSummary.getStats();
+
+            for (int id = 0; id < names; id++){
+
+                String name = taskSummary.nameOf(id);
+
+                if (name != null){
+
+                    totals[id] = stats.getTotal(name, size);
+                    counts[id] = stats.getWindows(name, size);
+                    present[id] = counts[id] > 0;
+                }
             }
-        }
-    }
 
-    private void printLog(String op, String name) throws IOException{
+            // Only the running windows are not in the stats
+            long now = now();
 
-        String msg =  String.format(Constants.PRINT_FORMAT, op)
-                + String.format(Constants.PRINT_FORMAT, name)
-                + String.format(Constants.PRINT_FORMAT, 
-                                (ZonedDateTime.now()).format(Constants.FORMATTER));
+            for (int slot : taskSummary.running()){
 
-        printHelper(msg);
+                if (taskSummary.getSize(slot) == size){
+
+                    totals[taskSummary.getNameId(slot)] += taskSummary.summaryTime(slot, now,
+                                                        Long.MIN_VALUE, Long.MAX_VALUE);
+                }
+            }
+        }else{
+
+            Aggregator.Result result = new Aggregator(taskSummary, now(), from, to, size)
+                                            .run(taskSummary.overlapping(from, to));
+
+            for (int id = 0; id < names; id++){
+
+                totals[id] = result.getTotal(id);
+                counts[id] = result.getWindows(id);
+                present[id] = counts[id] > 0 && taskSummary.nameOf(id) != null;
+            }
+        }
+
+        long[] averages = new long[names];
+
+        for (int id = 0; id < names; id++){
+
+            averages[id] = counts[id] == 0 ? 0 : totals[id] / counts[id];
+        }
+
+        long[] keys = by.equals(Constants.COUNT) ? counts 
+                        : by.equals(Constants.AVG) ? averages : totals;
+
+        int[] order = top > 0 ? Ranking.top(keys, present, top) 
+                                : Ranking.sorted(keys, present);
+
+        Renderer out = Renderer.console();
+
+        out.text(Constants.TOP_LABEL).endLine();
+        for (int id : order){
+
+            out.column(taskSummary.nameOf(id)).duration(totals[id], Constants.DURATION_GAP)
+                .column(String.valueOf(counts[id]))
+                .duration(averages[id], Constants.DURATION_GAP).endLine();
+        }
+        out.flush();
+    }
+
+    // Operate report --by day|week|month
+    // Time per name and per size of every bucket from the rollups,
+    // only the running windows are split here, up to now.
+    protected void report(int period) throws IOException{
+
+        Rollup running = new Rollup(ZoneId.systemDefault());
+        long now = now();
+
+        for (int slot : taskSummary.running()){
+
+            running.add(taskSummary.getName(slot), taskSummary.getSize(slot),
+                            taskSummary.getStart(slot), now);
+        }
+        printReport(period, rollup(), running);
+    }
+
+    // Operate report from the rollup file, 
+    // false if the whole log has to be read for it
+    @SuppressWarnings("try")
+    protected static boolean reportRollup(int period) throws IOException{
+
+        File log = logFile();
+
+        if (instance != null || !log.exists()){
+
+            return false;
+        }
+
+        RollupFile saved;
+
+        try (Perf.Phase phase = Perf.phase(Perf.READ)){
+
+            saved = RollupFile.read(RollupFile.of(log), RollupFile.stamp(log), period);
+        }
+
+        if (saved == null){
+
+            return false;
+        }
+
+        // Journal records since the snapshot aren't in it
+        File journalFile = new File(log.getAbsoluteFile().getParentFile(), 
+                                        Constants.JOURNAL_FNAME);
+
+        if (journalFile.exists() 
+                && !new Journal(journalFile).read(saved.getCheckpoint()).isEmpty()){
+
+            return false;
+        }
+
+        printReport(period, saved.getRollup(), saved.running(now()));
+        return true;
+    }
+
+    // Closed windows by day, week and month: the rollup file of the snapshot
+    // with the changes since if there is one, else built from every window.
+    // A rollup built from the snapshot as it is on disk is saved for the
+    // next report.
+    private Rollup rollup() throws IOException{
+
+        if (taskSummary.hasRollup()){
+
+            return taskSummary.getRollup();
+        }
+
+        RollupFile saved = RollupFile.read(RollupFile.of(file), snapshot);
+
+        if (saved != null){
+
+            taskSummary.setRollup(saved.getRollup());
+            return taskSummary.getRollup();
+        }
+
+        loadAll();
+
+        boolean unchanged = taskSummary.isUnchanged() && !dirty;
+        Rollup result = taskSummary.getRollup();
+
+        if (unchanged && file.exists()){
+
+            RollupFile.write(RollupFile.of(file), snapshot, checkpoint, result, taskSummary);
+        }
+        return result;
+    }
+
+    // Buckets of a period with the running windows added
+    private static void printReport(int period, Rollup closed, Rollup running) 
+                                                                throws IOException{
+
+        NavigableMap<Long, Rollup.Bucket> buckets = closed.buckets(period);
+        NavigableMap<Long, Rollup.Bucket> open = running.buckets(period);
+
+        SortedSet<Long> keys = new TreeSet<>(buckets.keySet());
+        keys.addAll(open.keySet());
+
+        Renderer out = Renderer.console();
+
+        for (long key : keys){
+
+            Rollup.Bucket bucket = buckets.get(key);
+            Rollup.Bucket extra = open.get(key);
+
+            // Names with closed windows first, then the ones only running,
+            // buckets without running windows are printed as they are
+            if (bucket == null){
+
+                bucket = extra;
+            }else if (extra != null){
+
+                bucket = bucket.plus(extra);
+            }
+
+            LocalDate date = LocalDate.ofEpochDay(key);
+
+            switch (period){
+                case Rollup.WEEK:
+                    out.text("Week of ").text(date.format(Constants.DAY_FORMATTER));
+                    break;
+                case Rollup.MONTH:
+                    out.text(date.format(Constants.MONTH_FORMATTER));
+                    break;
+                default:
+                    out.text(date.format(Constants.DAY_FORMATTER));
+                    break;
+            }
+            out.endLine();
+
+            out.text(Constants.SUM_LABEL).endLine();
+            for (String name : bucket.getNames()){
+
+                out.column(name).duration(bucket.getTime(name)).endLine();
+            }
+
+            out.text(Constants.SIZE_LABEL).endLine();
+            for (TASK_SIZE size : TASK_SIZE.values()){
+
+                long seconds = bucket.getSize(size);
+
+                if (seconds > 0){
+
+                    out.column(size.name()).duration(seconds).endLine();
+                }
+            }
+            out.endLine();
+        }
+        out.flush();
+    }
+
+    // Operate summary with --from/--to, name and size may be null
+    // Only the part of every window inside the range is counted.
+    protected void summaryTask(String name, TASK_SIZE size, long from, long to) 
+                                                            throws IOException{
+
+        if (name != null){
+
+            loadName(name);
+        }else{
+
+            loadRange(from, to);
+        }
+
+        if (name != null && !taskSummary.hasName(name)){
+
+            throw new RuntimeException("Couldn't find " + name);
+        }
+
+        TaskStore.IntList windows = name == null 
+                                        ? taskSummary.overlapping(from, to) 
+                                        : taskSummary.windows(name);
+
+        Aggregator.Result result = new Aggregator(taskSummary, now(), from, to, size)
+                                        .run(windows);
+
+        Renderer out = Renderer.console();
+
+        out.text(Constants.SUM_LABEL).endLine();
+        for (int id = 0; id < taskSummary.nameCount(); id++){
+
+            String task = taskSummary.nameOf(id);
+
+            // A name asked for is printed even without time in the range
+            if (task != null && (result.getWindows(id) > 0 || task.equals(name))){
+
+                out.column(task).duration(result.getTotal(id)).endLine();
+            }
+        }
+
+        if (name == null && size == null){
+
+            out.endLine();
+            out.text(computeStats(result.getSizes())).endLine();
+        }
+        out.flush();
+    }
+
+    // Closed windows of every size plus the running ones
+    private Map<TASK_SIZE, TaskStats.SizeStats> currentStats(){
+
+        List<TASK_SIZE> sizes = new ArrayList<>(Arrays.asList(
+                                    TASK_SIZE.S, TASK_SIZE.M, 
+                                    TASK_SIZE.L, TASK_SIZE.XL));
+
+        Map<TASK_SIZE, TaskStats.SizeStats> result = new EnumMap<>(TASK_SIZE.class);
+
+        for (TASK_SIZE size : sizes){
+
+            result.put(size, new TaskStats.SizeStats(taskSummary.sizeStats(size)));
+        }
+
+        long now = now();
+
+        for (int task : runningTasks()){
+
+            TaskStats.SizeStats sizeStats = result.get(taskSummary.getSize(task));
+
+            if (sizeStats != null){
+
+                sizeStats.add(taskSummary.summaryTime(task, now));
+            }
+        }
+        return result;
+    }
+
+    private String statsReport(Map<TASK_SIZE, TaskStats.SizeStats> stats){
+
+        StringBuilder result = new StringBuilder();
+
+        for (TASK_SIZE size : stats.keySet()){
+
+            TaskStats.SizeStats sizeStats = stats.get(size);
+
+            int count = sizeStats.getCount();
+
+            if (count >= 1){
+
+                result.append(size.toString()).append(": \n")
+                        .append("Count: ").append(count).append("\n")
+                        .append("Min: ").append(timeConverter(Duration.ofSeconds(sizeStats.getMin()))).append("\n")
+                        .append("Max: ").append(timeConverter(Duration.ofSeconds(sizeStats.getMax()))).append("\n")
+                        .append("Avg: ").append(timeConverter(Duration.ofSeconds(sizeStats.getSum() / count))).append("\n")
+                        .append("P50: ").append(timeConverter(quantile(sizeStats, 0.50))).append("\n")
+                        .append("P90: ").append(timeConverter(quantile(sizeStats, 0.90))).append("\n")
+                        .append("P99: ").append(timeConverter(quantile(sizeStats, 0.99))).append("\n\n");
+            }
+        }
+        return result.toString();
+    }
+
+    // Histogram buckets are approximate, keep the value within min and max
+    private Duration quantile(TaskStats.SizeStats sizeStats, double q){
+
+        long seconds = sizeStats.getHistogram().quantile(q);
+
+        seconds = Math.max(sizeStats.getMin(), Math.min(sizeStats.getMax(), seconds));
+        return Duration.ofSeconds(seconds);
+    }
+
+    private static String timeConverter(Duration timeDifference){
+
+        return timeDifference.toHours() + " Hours, " 
+                        + timeDifference.toMinutesPart() + " Minutes, " 
+                        + timeDifference.toSecondsPart() + " Seconds";
+    }
+
+    protected void printHelper(File target) throws IOException{
+
+        // The footer checksum covers the Task Summary too
+        CRC32 crc = new CRC32();
+
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+                    new CheckedOutputStream(new FileOutputStream(target), crc),
+                        Charset.defaultCharset()))) {
+            if (checkpoint > 0){
+
+                writer.write(Constants.CHECKPOINT + " " + checkpoint + "\n");
+            }
+
+            // Running tasks, so status doesn't read the whole log
+            Collection<Integer> running = taskSummary.running();
+            writer.write(Constants.RUNNING + " " + running.size() + "\n");
+
+            for (int task : running){
+
+                writer.write(String.format(Constants.PRINT_FORMAT, taskSummary.getName(task))
+                                + taskSummary.formatTime(taskSummary.getStart(task)) + "\n");
+            }
+            writer.write("Operation Log:\n");
+            writer.flush();
+
+            // Once history built its index, the offset of every line goes
+            // to the index with the flush, so it doesn't scan the log again
+            Map<String, IndexFile.Postings> indexed = HistoryIndex.exists(file) 
+                                                        ? new HashMap<>() : null;
+            Renderer out = new Renderer(writer).countBytes(Charset.defaultCharset());
+            long base = target.length();
+
+            for (String line : operationLog) {
+
+                if (indexed != null){
+
+                    HistoryIndex.operation(indexed, line, base + out.bytes());
+                }
+                out.text(line).endLine();
+            }
+            out.endLine();
+            out.flush();
+
+            long section = target.length();
+            crc.reset();
+            base = section - out.bytes();
+
+            out.text(Constants.TASK_SUMMARY).endLine();
+            out.text(Constants.LABEL).endLine();
+            out.flush();
+            logPostings = indexed;
+
+            // The rows and their totals are in the shards
+            if (shards != null){
+
+                writer.write("\n");
+                writer.flush();
+                Perf.written(target.length());
+                return;
+            }
+
+            for (int task = 0; task < taskSummary.slots(); task++) {
+
+                if (taskSummary.isDeleted(task)){
+                    continue;
+                }
+
+                if (indexed != null){
+
+                    HistoryIndex.row(indexed, taskSummary.getName(task), base + out.bytes());
+                }
+                out.task(taskSummary, task);
+            }
+            out.flush();
+
+            // Totals for summary, so it doesn't read the rows
+            writer.write("\n");
+            writer.flush();
+            SummaryFooter.write(writer, crc, section, target.length(),
+                                    taskSummary, checkpoint);
+        }
+        Perf.written(target.length());
+    }
+
+    protected void printBinary(File target) throws IOException{
+
+        BinarySnapshot.write(target, checkpoint, operationLog, taskSummary);
+    }
+
+    // Fold the journal into a new snapshot
+    // The snapshot is swapped in atomically before the journal is reset,
+    // a crash in between leaves a stale journal which is ignored on load
+    private void checkpointLog() throws IOException{
+
+        checkpoint = journal.getCheckpoint() + 1;
+
+        writeSnapshot();
+        journal.reset(checkpoint);
+    }
+
+    // Rewrite the log file through a temp file, 
+    // so a crash never leaves half a snapshot behind
+    private void writeSnapshot() throws IOException{
+
+        if (shards != null){
+
+            shards.write();
+        }
+
+        File temp = new File(file.getPath() + ".tmp");
+
+        if (binary){
+
+            printBinary(temp);
+        }else{
+
+            printHelper(temp);
+        }
+        Files.move(temp.toPath(), file.toPath(), 
+                    StandardCopyOption.REPLACE_EXISTING, 
+                        StandardCopyOption.ATOMIC_MOVE);
+
+        String before = snapshot;
+        snapshot = RollupFile.stamp(file);
+
+        writeRollup(before);
+    }
+
+    // Rollup file of the new snapshot, if the rollup is known: built by
+    // a report, or the rollup file of the last snapshot with the changes since.
+    // Else an old rollup file is removed and report builds it again.
+    private void writeRollup(String before) throws IOException{
+
+        File target = RollupFile.of(file);
+
+        if (!taskSummary.hasRollup()){
+
+            RollupFile saved = RollupFile.read(target, before);
+
+            if (saved == null){
+
+                Files.deleteIfExists(target.toPath());
+                taskSummary.trackChanges();
+                return;
+            }
+            taskSummary.setRollup(saved.getRollup());
+        }
+        RollupFile.write(target, snapshot, checkpoint, taskSummary.getRollup(), taskSummary);
+    }
+
+    // Operate convert
+    // Writes the other layout next to the log and removes the old file,
+    // a journaled log is checkpointed so the journal starts over with it
+    protected void convertLog(boolean toBinary) throws IOException{
+
+        flush();
+
+        if (shards != null){
+
+            throw new RuntimeException(Constants.CONVERT + ": " + Constants.ERR_SHARDED);
+        }
+
+        if (toBinary == binary){
+
+            System.out.println("Log is already " 
+                                + (binary ? Constants.BINARY : Constants.TEXT));
+            return;
+        }
+
+        File old = file;
+
+        file = new File(file.getAbsoluteFile().getParentFile(), 
+                            toBinary ? Constants.BINARY_FNAME : Constants.LOG_FNAME);
+        binary = toBinary;
+
+        // The new snapshot has the journal records folded in
+        if (journal != null){
+
+            checkpointLog();
+        }else{
+
+            writeSnapshot();
+        }
+        Files.delete(old.toPath());
+
+        stamp = stamp();
+
+        System.out.println("Converted " + taskSummary.count() + " time windows to "
+                            + (binary ? Constants.BINARY : Constants.TEXT));
+    }
+
+    // Operate export, csv or json to System.out
+    protected void exportTask(String format) throws IOException{
+
+        loadAll();
+
+        Renderer out = Renderer.console();
+        Export export = new Export(taskSummary, out, now());
+
+        if (format.equals(Constants.CSV)){
+
+            export.csv();
+        }else{
+            export.json();
+        }
+        out.flush();
+    }
+
+    // Operate Compact
+    // Moves the Operation Log into segments and writes a fresh snapshot,
+    // from then on new operations only go to the active segment
+    protected void compactLog(boolean gzip) throws IOException{
+
+        flush();
+
+        if (history == null){
+
+            File dir = segmentDir();
+            Files.createDirectories(dir.toPath());
+            history = new OperationHistory(dir, file);
+        }
+
+        // Older than anything in the segments
+        history.begin();
+        history.archive(operationLog);
+        operationLog.clear();
+        history.roll();
+
+        if (gzip){
+
+            history.compress();
+        }
+
+        if (journal != null){
+
+            checkpointLog();
+        }else{
+
+            writeSnapshot();
+        }
+        history.finish();
+
+        stamp = stamp();
+
+        System.out.println("Compacted " + taskSummary.count() + " time windows, "
+                            + history.segments().size() + " segments archived");
+    }
+
+    // Operate import
+    // Windows from a CSV file, validated in full before any is added,
+    // then written with one snapshot. They aren't journal records,
+    // so a journaled log is checkpointed right away.
+    protected void importTask(String source) throws IOException{
+
+        long count;
+
+        try (Import rows = new Import(Paths.get(source), taskSummary)){
+
+            count = rows.validate();
+
+            // Shards which get windows are rewritten, so all of their rows are needed
+            if (shards != null){
+
+                for (long day : rows.days()){
+
+                    shards.loadMonth(day * 86400);
+                    shards.loadMonth(day * 86400 + 86399);
+                }
+            }
+
+            rows.apply(slot -> {
+
+                if (shards != null){
+
+                    shards.touch(slot);
+                }
+            });
+        }
+
+        String msg = String.format(Constants.PRINT_FORMAT, Constants.IMPORT)
+                        + String.format(Constants.PRINT_FORMAT, Paths.get(source).getFileName())
+                        + String.format(Constants.PRINT_FORMAT, 
+                                        (ZonedDateTime.now()).format(Constants.FORMATTER));
+
+        if (history == null){
+
+            operationLog.add(msg);
+        }else{
+
+            pendingOps.add(msg);
+        }
+        dirty = true;
+
+        if (journal != null){
+
+            flush();
+            checkpointLog();
+        }else if (!deferred){
+
+            flush();
+        }
+
+        System.out.println("Imported " + count + " time windows");
+    }
+
+    // Operate shard
+    // Moves the Task Summary into one file per month, the journal is
+    // folded in first since a sharded log writes only the changed shards
+    protected void shardLog() throws IOException{
+
+        flush();
+
+        if (binary){
+
+            throw new RuntimeException(Constants.SHARD + ": " + Constants.ERR_SHARD_BINARY);
+        }
+
+        if (shards != null){
+
+            System.out.println("Log is already sharded");
+            return;
+        }
+
+        if (journal != null){
+
+            checkpointLog();
+            Files.delete(new File(file.getAbsoluteFile().getParentFile(), 
+                                    Constants.JOURNAL_FNAME).toPath());
+            journal = null;
+        }
+
+        Files.createDirectories(shardDir().toPath());
+        shards = new Shards(shardDir(), taskSummary);
+        shards.adopt();
+
+        writeSnapshot();
+
+        stamp = stamp();
+
+        System.out.println("Sharded " + taskSummary.count() + " time windows into "
+                            + shards.size() + " shards");
+    }
+
+    private File shardDir(){
+
+        return new File(file.getAbsoluteFile().getParentFile(), Constants.SHARD_DIR);
+    }
+
+    private File segmentDir(){
+
+        return new File(file.getAbsoluteFile().getParentFile(), Constants.SEGMENT_DIR);
+    }
+
+    private void printLog(String op, String name, String... args) throws IOException{
+
+        String msg =  String.format(Constants.PRINT_FORMAT, op)
+                + String.format(Constants.PRINT_FORMAT, name)
+                + String.format(Constants.PRINT_FORMAT, 
+                                (ZonedDateTime.now()).format(Constants.FORMATTER));
+
+        if (history == null){
+
+            operationLog.add(msg);
+        }else{
+
+            pendingOps.add(msg);
+        }
+
+        if (journal != null){
+
+            // Journal mode only appends one record
+            String[] record = new String[args.length + 3];
+            record[0] = msg;
+            record[1] = op;
+            record[2] = name;
+            System.arraycopy(args, 0, record, 3, args.length);
+
+            pending.add(record);
+        }
+        dirty = true;
+
+        if (!deferred){
+
+            flush();
+        }
+    }
+
+    // Write changes which are only in memory
+    @SuppressWarnings("try")
+    protected void flush() throws IOException{
+
+        if (!dirty){
+            return;
+        }
+
+        try (Perf.Phase phase = Perf.phase(Perf.WRITE)){
+
+            write();
+        }
+    }
+
+    private void write() throws IOException{
+
+        if (history != null){
+
+            history.append(pendingOps);
+            pendingOps.clear();
+        }
+
+        if (journal == null){
+
+            writeSnapshot();
+        }else{
+
+            journal.append(pending);
+            pending.clear();
+
+            if (journal.isFull()){
+
+                checkpointLog();
+            }
+        }
+        dirty = false;
+        stamp = stamp();
+
+        Renames.record(file, pendingRenames);
+        pendingRenames.clear();
+        // Only a text snapshot updates the index, journal records and binary
+        // snapshots are scanned by the next history, appends stay cheap
+        if (logPostings != null){
+
+            HistoryIndex.update(file, logPostings);
+            logPostings = null;
+        }
+    }
+
+    // Deferred commands only change memory until flush,
+    // so a batch of commands costs one write
+    protected void setDeferred(boolean deferred){ this.deferred = deferred; }
+
+    protected boolean isDeferred(){ return deferred; }
+
+    // Size and modification time of the log and journal
+    private String stamp() throws IOException{
+
+        File journalFile = new File(file.getAbsoluteFile().getParentFile(), 
+                                        Constants.JOURNAL_FNAME);
+        String result = file.length() + "/" + journalFile.length();
+
+        if (file.exists()){
+
+            result += "/" + Files.getLastModifiedTime(file.toPath());
+        }
+        return result;
+    }
+
+    // Loaded Logger, read again if another process wrote the log since,
+    // only called while holding the log lock
+    protected static Logger refresh() throws IOException{
+
+        if (instance != null && !instance.dirty 
+                && !instance.stamp.equals(instance.stamp())){
+
+            // Converted by another process if the file is gone
+            instance = new Logger(instance.file.exists() ? instance.file : logFile());
+        }
+        return getInstance();
+    }
+
+    // Log read again, changes only in memory are dropped,
+    // if it can't be read the next getInstance tries again
+    protected static Logger reload() throws IOException{
+
+        instance = null;
+        return getInstance();
+    }
+
+    // Operation Log lines and windows of a name, the last limit of each
+    protected static void history(String name, int limit) throws IOException{
+
+        // The index only reads files
+        if (instance != null){
+
+            instance.flush();
+        }
+        new HistoryIndex(logFile()).print(name, limit, Logger::getInstance);
+    }
+
+    // Operation Log lines of the names, when they are only in memory
+    protected List<String> operations(Map<String, Integer> names){
+
+        return Renames.filter(operationLog, names);
+    }
+
+    // Task Summary rows of a name, when they are only in memory
+    protected List<String> rows(String name) throws IOException{
+
+        loadName(name);
+
+        StringWriter text = new StringWriter();
+        Renderer out = new Renderer(text);
+        TaskStore.IntList windows = taskSummary.windows(name);
+        Integer[] slots = new Integer[windows.size()];
+
+        for (int i = 0; i < slots.length; i++){
+
+            slots[i] = windows.get(i);
+        }
+
+        // Shards are loaded in any order, their rows are in start order
+        if (shards != null){
+
+            Arrays.sort(slots, (a, b) -> Long.compare(taskSummary.getStart(a),
+                                                        taskSummary.getStart(b)));
+        }
+
+        for (int slot : slots){
+
+            out.task(taskSummary, slot);
+        }
+        out.flush();
+
+        List<String> result = new ArrayList<>();
+
+        for (String row : text.toString().split("\n")){
+
+            if (!row.isEmpty()){
+
+                result.add(row);
+            }
+        }
+        return result;
+    }
+
+    // Operate summary and summary <name> from the summary footer, 
+    // false if the whole log has to be read for it
+    @SuppressWarnings("try")
+    protected static boolean summaryFooter(String[] args) throws IOException{
+
+        File log = logFile();
+
+        if (instance != null || args.length > 2 || !log.exists()
+                || log.getName().endsWith(Constants.BINARY_EXT)){
+
+            return false;
+        }
+
+        String name = args.length == 2 ? args[1] : null;
+
+        // Sizes, prefixes and options need the windows
+        if (name != null && (name.startsWith("--") || name.endsWith(Constants.WILDCARD)
+                                || RecordParser.sizeOf(name.toUpperCase()) != null)){
+
+            return false;
+        }
+
+        SummaryFooter footer;
+
+        try (Perf.Phase phase = Perf.phase(Perf.READ)){
+
+            footer = SummaryFooter.read(log);
+        }
+
+        if (footer == null){
+
+            return false;
+        }
+
+        // Journal records since the snapshot aren't in the footer
+        File journalFile = new File(log.getAbsoluteFile().getParentFile(), 
+                                        Constants.JOURNAL_FNAME);
+
+        if (journalFile.exists() 
+                && !new Journal(journalFile).read(footer.getCheckpoint()).isEmpty()){
+
+            return false;
+        }
+
+        long now = now();
+        Renderer out = Renderer.console();
+
+        out.text(Constants.SUM_LABEL).endLine();
+
+        if (name != null){
+
+            if (!footer.hasName(name)){
+
+                throw new RuntimeException("Couldn't find " + name);
+            }
+            out.column(name).duration(footer.totalTime(name, now)).endLine();
+        }else{
+
+            for (String task : footer.names()){
+
+                out.column(task).duration(footer.totalTime(task, now)).endLine();
+            }
+            out.endLine();
+            out.text(computeStats(footer.currentStats(now))).endLine();
+        }
+        out.flush();
+        return true;
+    }
+
+    // Running tasks, from the log header unless the log is loaded already
+    protected static void status() throws IOException{
+
+        File log = logFile();
+
+        if (instance == null){
+
+            Status status = new Status();
+
+            if (!log.exists() || status.readHeader(log)){
+
+                status.print(now());
+                return;
+            }
+        }
+        getInstance().statusTask();
+    }
+
+    protected void statusTask() throws IOException{
+
+        Status status = new Status();
+
+        for (int task : taskSummary.running()){
+
+            status.add(taskSummary.getName(task), taskSummary.getStart(task));
+        }
+        Perf.touched(taskSummary.running().size());
+        status.print(now());
     }
 
-    protected static Logger getInstance() {
+    protected static Logger getInstance() throws IOException{
         
         if (instance == null) {
 
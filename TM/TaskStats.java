@@ -0,0 +1,231 @@
+package TM;
+
+// Imports for manage and categorize data
+import java.util.Map;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Set;
+
+// Task statistics
+// Keeps seconds spent per task name, windows and seconds per name of each
+// size and count/min/max/sum per size,
+// plus a histogram of window lengths per size for quantiles,
+// updated whenever a time window changes instead of rescanning every task.
+// Running windows keep growing, so only closed windows are counted here
+// and the running ones are added when the stats are read.
+class TaskStats{
+
+    // Closed seconds of every task name, in first seen order
+    private Map<String, Long> totals = new LinkedHashMap<>();
+
+    // Windows and closed seconds of every name for each size,
+    // a name is removed with its last window of the size
+    private Map<TASK_SIZE, Map<String, long[]>> sizeNames = new EnumMap<>(TASK_SIZE.class);
+
+    // Positions in a sizeNames cell
+    private static final int WINDOWS = 0;
+    private static final int SECONDS = 1;
+
+    // Closed windows of each size
+    private Map<TASK_SIZE, SizeStats> sizes = new EnumMap<>(TASK_SIZE.class);
+
+    protected TaskStats(){
+
+        for (TASK_SIZE size : TASK_SIZE.values()){
+
+            sizeNames.put(size, new LinkedHashMap<>());
+            sizes.put(size, new SizeStats());
+        }
+    }
+
+    // Count a window of a name
+    protected void addWindow(String name, TASK_SIZE size){
+
+        totals.putIfAbsent(name, 0L);
+        sizeNames.get(size).computeIfAbsent(name, k -> new long[2])[WINDOWS]++;
+    }
+
+    // Count the time of a closed window
+    protected void addTime(String name, TASK_SIZE size, long seconds){
+
+        totals.merge(name, seconds, Long::sum);
+        sizeNames.get(size).computeIfAbsent(name, k -> new long[2])[SECONDS] += seconds;
+        sizes.get(size).add(seconds);
+    }
+
+    // Take a window out, the name stays until removeName
+    protected void removeWindow(String name, TASK_SIZE size){
+
+        sizeNames.get(size).computeIfPresent(name, (k, cell) -> --cell[WINDOWS] == 0 ? null : cell);
+    }
+
+    protected void removeTime(String name, TASK_SIZE size, long seconds){
+
+        totals.computeIfPresent(name, (k, total) -> total - seconds);
+        sizeNames.get(size).computeIfPresent(name, (k, cell) -> {
+
+            cell[SECONDS] -= seconds;
+            return cell;
+        });
+        sizes.get(size).remove(seconds);
+    }
+
+    protected void removeName(String name){
+
+        totals.remove(name);
+    }
+
+    protected void rename(String name, String newName){
+
+        Long total = totals.remove(name);
+
+        if (total != null){
+
+            totals.merge(newName, total, Long::sum);
+        }
+
+        for (Map<String, long[]> names : sizeNames.values()){
+
+            long[] cell = names.remove(name);
+
+            if (cell != null){
+
+                long[] merged = names.computeIfAbsent(newName, k -> new long[2]);
+                merged[WINDOWS] += cell[WINDOWS];
+                merged[SECONDS] += cell[SECONDS];
+            }
+        }
+    }
+
+    // Names which have windows
+    protected Set<String> names(){ return totals.keySet(); }
+
+    // Names which have windows of this size
+    protected Set<String> names(TASK_SIZE size){ return sizeNames.get(size).keySet(); }
+
+    // Closed seconds of a name
+    protected long getTotal(String name){
+
+        return totals.getOrDefault(name, 0L);
+    }
+
+    // Windows of a name with this size, the running one included
+    protected long getWindows(String name, TASK_SIZE size){
+
+        long[] cell = sizeNames.get(size).get(name);
+
+        return cell == null ? 0 : cell[WINDOWS];
+    }
+
+    // Closed seconds of a name with this size
+    protected long getTotal(String name, TASK_SIZE size){
+
+        long[] cell = sizeNames.get(size).get(name);
+
+        return cell == null ? 0 : cell[SECONDS];
+    }
+
+    protected SizeStats getSize(TASK_SIZE size){ return sizes.get(size); }
+
+    // min or max of the size may have been removed
+    protected boolean isDirty(TASK_SIZE size){ return sizes.get(size).dirty; }
+
+    // Rebuild min and max, every closed window of the size
+    // is passed to bound after this
+    protected void clearBounds(TASK_SIZE size){
+
+        SizeStats stats = sizes.get(size);
+
+        stats.min = Long.MAX_VALUE;
+        stats.max = Long.MIN_VALUE;
+        stats.dirty = false;
+    }
+
+    protected void bound(TASK_SIZE size, long seconds){
+
+        sizes.get(size).bound(seconds);
+    }
+
+    // Count, sum, min, max and histogram of one size in seconds
+    protected static class SizeStats{
+
+        private int count = 0;
+        private long sum = 0;
+        private long min = Long.MAX_VALUE;
+        private long max = Long.MIN_VALUE;
+        private Histogram histogram = new Histogram();
+
+        // Set when min or max may have been removed
+        private boolean dirty = false;
+
+        protected SizeStats(){}
+
+        // Stats without a histogram, as the summary footer keeps them
+        protected SizeStats(int count, long sum, long min, long max){
+
+            this.count = count;
+            this.sum = sum;
+            this.min = min;
+            this.max = max;
+        }
+
+        protected SizeStats(SizeStats other){
+
+            count = other.count;
+            sum = other.sum;
+            min = other.min;
+            max = other.max;
+            histogram = new Histogram(other.histogram);
+        }
+
+        protected void add(long seconds){
+
+            count++;
+            sum += seconds;
+            histogram.add(seconds);
+
+            if (!dirty){
+
+                bound(seconds);
+            }
+        }
+
+        protected void remove(long seconds){
+
+            count--;
+            sum -= seconds;
+            histogram.remove(seconds);
+
+            if (seconds == min || seconds == max){
+
+                dirty = true;
+            }
+        }
+
+        // Add the windows of another SizeStats
+        protected void merge(SizeStats other){
+
+            count += other.count;
+            sum += other.sum;
+            histogram.merge(other.histogram);
+
+            if (other.count > 0){
+
+                bound(other.min);
+                bound(other.max);
+            }
+        }
+
+        private void bound(long seconds){
+
+            min = Math.min(min, seconds);
+            max = Math.max(max, seconds);
+        }
+
+        protected int getCount(){ return count; }
+        protected long getSum(){ return sum; }
+        protected long getMin(){ return min; }
+        protected long getMax(){ return max; }
+        protected Histogram getHistogram(){ return histogram; }
+    }
+}
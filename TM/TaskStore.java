@@ -0,0 +1,535 @@
+package TM;
+
+// Imports for data operations
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+// Imports for store time value
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+// Task store
+// Keeps every time window in columns instead of one Task object each:
+// interned name ids, size ordinals, epoch seconds and pooled descriptions.
+// A window is identified by its slot, deleted windows leave an empty slot
+// behind so the slots of other windows never move while loaded.
+class TaskStore{
+
+    // No window / deleted slot
+    protected static final int NONE = -1;
+
+    private static final TASK_SIZE[] SIZES = TASK_SIZE.values();
+
+    // Interned names, a name keeps its id until it is deleted
+    private List<String> names = new ArrayList<>();
+    private Map<String, Integer> nameIds = new HashMap<>();
+
+    // Windows of every name id in record order,
+    // so the last one is the latest record of that name
+    private List<IntList> windows = new ArrayList<>();
+
+    // Pooled descriptions
+    private List<String> descs = new ArrayList<>();
+    private Map<String, Integer> descIds = new HashMap<>();
+
+    // Columns, one entry per slot
+    private int[] nameId = new int[16];
+    private byte[] size = new byte[16];
+    private long[] start = new long[16];
+    private long[] end = new long[16];
+    private int[] desId = new int[16];
+
+    // Slots in use, including deleted ones
+    private int slots = 0;
+
+    // Windows which are not deleted
+    private int count = 0;
+
+    // Time spent per name and per size, kept up to date on every change
+    private TaskStats stats = new TaskStats();
+
+    // Slots by start time, for time range lookups
+    private TimeIndex index = new TimeIndex(this);
+
+    // Slots of running windows, in the order they were started
+    private Set<Integer> running = new LinkedHashSet<>();
+
+    private ZoneId zone = ZoneId.systemDefault();
+
+    // Time spent per day, week and month, built by the first report
+    // and kept up to date like the stats from then on
+    private Rollup rollup = null;
+
+    // Closed windows changed since the snapshot while there is no rollup,
+    // added to the rollup file of the snapshot when the next one is written
+    private Rollup changes = null;
+
+    // Names in sorted order, built by the first prefix lookup
+    // and kept up to date from then on
+    private TreeSet<String> sortedNames = null;
+
+    // Add a time window, returns its slot
+    protected int add(String name, TASK_SIZE taskSize, long taskStart, long taskEnd, String des){
+
+        return add(name, taskSize, taskStart, taskEnd, des, true);
+    }
+
+    // Add a window read from the log later on, it is in the rollups already
+    protected int load(String name, TASK_SIZE taskSize, long taskStart, long taskEnd, String des){
+
+        return add(name, taskSize, taskStart, taskEnd, des, false);
+    }
+
+    private int add(String name, TASK_SIZE taskSize, long taskStart, long taskEnd, String des,
+                        boolean changed){
+
+        if (slots == nameId.length){
+
+            grow();
+        }
+
+        int id = nameIds.computeIfAbsent(name, k -> {
+            names.add(k);
+            windows.add(new IntList());
+
+            if (sortedNames != null){
+
+                sortedNames.add(k);
+            }
+            return names.size() - 1;
+        });
+
+        int slot = slots++;
+        nameId[slot] = id;
+        size[slot] = (byte) taskSize.ordinal();
+        start[slot] = taskStart;
+        end[slot] = taskEnd;
+        desId[slot] = intern(des);
+
+        windows.get(id).add(slot);
+        index.add(slot);
+        count++;
+
+        stats.addWindow(name, taskSize);
+
+        if (taskEnd != Constants.MIN_EPOCH){
+
+            stats.addTime(name, taskSize, taskEnd - taskStart);
+
+            if (changed){
+
+                roll(name, taskSize, taskStart, taskEnd, 1);
+            }
+        }else{
+
+            running.add(slot);
+        }
+        return slot;
+    }
+
+    // Latest window of a name, NONE if not found
+    // Shards loaded later add older windows after it,
+    // so the running window of the name is looked up first.
+    protected int find(String name){
+
+        Integer id = nameIds.get(name);
+
+        if (id == null){
+
+            return NONE;
+        }
+
+        IntList list = windows.get(id);
+        int latest = list.get(list.size() - 1);
+
+        if (!isRunning(latest)){
+
+            for (int slot : running){
+
+                if (nameId[slot] == id){
+
+                    return slot;
+                }
+            }
+        }
+        return latest;
+    }
+
+    // Windows of a name, empty if not found
+    protected IntList windows(String name){
+
+        Integer id = nameIds.get(name);
+
+        return id == null ? IntList.EMPTY : windows.get(id);
+    }
+
+    protected boolean hasName(String name){ return nameIds.containsKey(name); }
+
+    // Names which start with prefix, in sorted order
+    // The matches are next to each other in the sorted names,
+    // so only they are visited after one lookup.
+    protected List<String> namesWithPrefix(String prefix){
+
+        if (sortedNames == null){
+
+            sortedNames = new TreeSet<>(nameIds.keySet());
+        }
+
+        List<String> result = new ArrayList<>();
+
+        for (String name : sortedNames.tailSet(prefix)){
+
+            if (!name.startsWith(prefix)){
+                break;
+            }
+            result.add(name);
+        }
+        return result;
+    }
+
+    // Names which have windows, in first seen order
+    protected List<String> names(){
+
+        List<String> result = new ArrayList<>(nameIds.size());
+
+        for (String name : names){
+
+            if (name != null){
+
+                result.add(name);
+            }
+        }
+        return result;
+    }
+
+    // Name ids in use, including the ones of deleted names
+    protected int nameCount(){ return names.size(); }
+
+    // Name of an id, null if it was deleted or merged
+    protected String nameOf(int id){ return names.get(id); }
+
+    // Stop a running window
+    protected void stop(int slot, long taskEnd){
+
+        end[slot] = taskEnd;
+        stats.addTime(getName(slot), getSize(slot), taskEnd - start[slot]);
+        roll(getName(slot), getSize(slot), start[slot], taskEnd, 1);
+        index.update(slot);
+        running.remove(slot);
+    }
+
+    protected void setSize(int slot, TASK_SIZE taskSize){
+
+        String name = getName(slot);
+        TASK_SIZE old = getSize(slot);
+
+        if (old == taskSize){
+            return;
+        }
+
+        stats.removeWindow(name, old);
+        stats.addWindow(name, taskSize);
+
+        if (!isRunning(slot)){
+
+            stats.removeTime(name, old, end[slot] - start[slot]);
+            stats.addTime(name, taskSize, end[slot] - start[slot]);
+
+            roll(name, old, start[slot], end[slot], -1);
+            roll(name, taskSize, start[slot], end[slot], 1);
+        }
+        size[slot] = (byte) taskSize.ordinal();
+    }
+
+    protected void setDes(int slot, String des){ desId[slot] = intern(des); }
+
+    // Rename every window of a name, the windows keep their name id
+    protected void rename(String name, String newName){
+
+        Integer id = nameIds.remove(name);
+
+        if (id == null){
+            return;
+        }
+
+        stats.rename(name, newName);
+
+        if (rollup != null){
+
+            rollup.rename(name, newName);
+        }
+
+        if (changes != null){
+
+            IntList list = windows.get(id);
+
+            for (int i = 0; i < list.size(); i++){
+
+                int slot = list.get(i);
+
+                if (!isRunning(slot)){
+
+                    changes.remove(name, getSize(slot), start[slot], end[slot]);
+                    changes.add(newName, getSize(slot), start[slot], end[slot]);
+                }
+            }
+        }
+
+        if (sortedNames != null){
+
+            sortedNames.remove(name);
+            sortedNames.add(newName);
+        }
+
+        Integer existing = nameIds.get(newName);
+
+        if (existing == null){
+
+            names.set(id, newName);
+            nameIds.put(newName, id);
+            return;
+        }
+
+        // Merge into a name which already exists
+        IntList moved = windows.get(id);
+        for (int i = 0; i < moved.size(); i++){
+
+            nameId[moved.get(i)] = existing;
+        }
+        windows.get(existing).addAll(moved);
+        windows.set(id, null);
+        names.set(id, null);
+    }
+
+    // Delete every window of a name
+    protected void remove(String name){
+
+        Integer id = nameIds.remove(name);
+
+        if (id == null){
+            return;
+        }
+
+        IntList list = windows.get(id);
+
+        for (int i = 0; i < list.size(); i++){
+
+            int slot = list.get(i);
+            TASK_SIZE taskSize = getSize(slot);
+
+            stats.removeWindow(name, taskSize);
+
+            if (!isRunning(slot)){
+
+                stats.removeTime(name, taskSize, end[slot] - start[slot]);
+                roll(name, taskSize, start[slot], end[slot], -1);
+            }
+            running.remove(slot);
+            nameId[slot] = NONE;
+        }
+        stats.removeName(name);
+
+        if (sortedNames != null){
+
+            sortedNames.remove(name);
+        }
+
+        count -= list.size();
+        windows.set(id, null);
+        names.set(id, null);
+    }
+
+    // Closed windows of a size, min and max are rebuilt
+    // from the columns after one of them was removed
+    protected TaskStats.SizeStats sizeStats(TASK_SIZE taskSize){
+
+        if (stats.isDirty(taskSize)){
+
+            stats.clearBounds(taskSize);
+
+            for (int slot = 0; slot < slots; slot++){
+
+                if (nameId[slot] != NONE && size[slot] == taskSize.ordinal()
+                        && !isRunning(slot)){
+
+                    stats.bound(taskSize, end[slot] - start[slot]);
+                }
+            }
+        }
+        return stats.getSize(taskSize);
+    }
+
+    // Windows which overlap a time range, deleted ones included
+    protected IntList overlapping(long from, long to){
+
+        return index.overlapping(from, to);
+    }
+
+    // Running windows, oldest first
+    protected Collection<Integer> running(){ return Collections.unmodifiableSet(running); }
+
+    protected TaskStats getStats(){ return stats; }
+
+    // Rollup of the loaded windows, built from them on the first call
+    protected Rollup getRollup(){
+
+        if (rollup == null){
+
+            rollup = new Rollup(zone);
+            changes = null;
+
+            for (int slot = 0; slot < slots; slot++){
+
+                if (nameId[slot] != NONE && !isRunning(slot)){
+
+                    rollup.add(getName(slot), getSize(slot), start[slot], end[slot]);
+                }
+            }
+        }
+        return rollup;
+    }
+
+    protected boolean hasRollup(){ return rollup != null; }
+
+    // Rollup of the snapshot from the rollup file, with the changes since
+    protected void setRollup(Rollup saved){
+
+        if (changes != null){
+
+            saved.merge(changes);
+        }
+        rollup = saved;
+        changes = null;
+    }
+
+    // Count changes to closed windows from now on, the store holds a snapshot
+    protected void trackChanges(){
+
+        if (rollup == null){
+
+            changes = new Rollup(zone);
+        }
+    }
+
+    // No closed window changed since trackChanges
+    protected boolean isUnchanged(){ return changes != null && changes.isEmpty(); }
+
+    // A closed window counts in the rollup, or in the changes while
+    // there is none, sign -1 takes it out
+    private void roll(String name, TASK_SIZE taskSize, long taskStart, long taskEnd, int sign){
+
+        Rollup target = rollup != null ? rollup : changes;
+
+        if (target == null){
+            return;
+        }
+
+        if (sign > 0){
+
+            target.add(name, taskSize, taskStart, taskEnd);
+        }else{
+            target.remove(name, taskSize, taskStart, taskEnd);
+        }
+    }
+
+    // Slots in use, some of them may be deleted
+    protected int slots(){ return slots; }
+
+    // Windows which are not deleted
+    protected int count(){ return count; }
+
+    protected boolean isDeleted(int slot){ return nameId[slot] == NONE; }
+    protected boolean isRunning(int slot){ return end[slot] == Constants.MIN_EPOCH; }
+
+    protected String getName(int slot){ return names.get(nameId[slot]); }
+    protected int getNameId(int slot){ return nameId[slot]; }
+    protected TASK_SIZE getSize(int slot){ return SIZES[size[slot]]; }
+    protected long getStart(int slot){ return start[slot]; }
+    protected long getEnd(int slot){ return end[slot]; }
+    protected String getDes(int slot){ return descs.get(desId[slot]); }
+
+    // Seconds spent, running windows count up to now
+    protected long summaryTime(int slot, long now){
+
+        return (isRunning(slot) ? now : end[slot]) - start[slot];
+    }
+
+    // Seconds spent between from and to
+    protected long summaryTime(int slot, long now, long from, long to){
+
+        long windowEnd = Math.min(isRunning(slot) ? now : end[slot], to);
+
+        return Math.max(0, windowEnd - Math.max(start[slot], from));
+    }
+
+    protected String formatTime(long epoch){
+
+        return toTime(epoch).format(Constants.FORMATTER);
+    }
+
+    private ZonedDateTime toTime(long epoch){
+
+        if (epoch == Constants.MIN_EPOCH){
+
+            return Constants.MIN_TIME;
+        }
+        return Instant.ofEpochSecond(epoch).atZone(zone);
+    }
+
+    private int intern(String des){
+
+        return descIds.computeIfAbsent(des, k -> {
+            descs.add(k);
+            return descs.size() - 1;
+        });
+    }
+
+    private void grow(){
+
+        int capacity = nameId.length * 2;
+
+        nameId = Arrays.copyOf(nameId, capacity);
+        size = Arrays.copyOf(size, capacity);
+        start = Arrays.copyOf(start, capacity);
+        end = Arrays.copyOf(end, capacity);
+        desId = Arrays.copyOf(desId, capacity);
+    }
+
+    // Growable list of slots
+    protected static class IntList{
+
+        protected static final IntList EMPTY = new IntList();
+
+        private int[] values = new int[2];
+        private int size = 0;
+
+        protected void add(int value){
+
+            if (size == values.length){
+
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        protected void addAll(IntList other){
+
+            for (int i = 0; i < other.size; i++){
+
+                add(other.values[i]);
+            }
+        }
+
+        protected int get(int index){ return values[index]; }
+        protected int size(){ return size; }
+    }
+}
@@ -0,0 +1,274 @@
+package TM;
+
+// Imports for data operations
+import java.util.Arrays;
+
+// Time index
+// Slots of a TaskStore sorted by start time, with a segment tree over the
+// positions which keeps the latest end of the closed windows below every
+// node. Windows overlapping a range start before the range end, found with
+// a binary search, and the tree walk only enters nodes whose latest end
+// gets to the range start, so a lookup costs the windows it returns and
+// not the windows before them.
+// Running windows may still end anywhere, they are kept in a list of their
+// own instead of the tree and a stop moves one into the tree.
+// Windows are normally added in start order, an older start only marks
+// the index unsorted and it is sorted again on the next lookup.
+class TimeIndex{
+
+    // Latest end of a node without closed windows
+    private static final long NONE = Long.MIN_VALUE;
+
+    private final TaskStore store;
+
+    // Slots by start time
+    private int[] order = new int[16];
+
+    // Position of every slot in order
+    private int[] position = new int[16];
+
+    private int size = 0;
+    private boolean sorted = true;
+
+    // Segment tree over the positions, node 1 is the root and the leaves
+    // start at capacity, a leaf has the end of a closed window
+    private int capacity = 16;
+    private long[] latest = newTree(16);
+
+    // Running windows, in the order they were added
+    private TaskStore.IntList running = new TaskStore.IntList();
+
+    protected TimeIndex(TaskStore store){
+
+        this.store = store;
+    }
+
+    protected void add(int slot){
+
+        if (size == order.length){
+
+            order = Arrays.copyOf(order, size * 2);
+        }
+        if (slot >= position.length){
+
+            position = Arrays.copyOf(position, Math.max(slot + 1, position.length * 2));
+        }
+
+        if (size > 0 && store.getStart(slot) < store.getStart(order[size - 1])){
+
+            sorted = false;
+        }
+
+        order[size] = slot;
+        position[slot] = size;
+        size++;
+
+        if (store.isRunning(slot)){
+
+            running.add(slot);
+        }
+
+        if (!sorted){
+            return;
+        }
+
+        if (size > capacity){
+
+            build();
+        }else{
+            set(size - 1, endOf(slot));
+        }
+    }
+
+    // A running window was stopped, it goes into the tree
+    protected void update(int slot){
+
+        TaskStore.IntList rest = new TaskStore.IntList();
+
+        for (int i = 0; i < running.size(); i++){
+
+            if (running.get(i) != slot){
+
+                rest.add(running.get(i));
+            }
+        }
+        running = rest;
+
+        if (sorted){
+
+            set(position[slot], endOf(slot));
+        }
+    }
+
+    // Windows which overlap from (inclusive) to to (exclusive), by start time
+    // Deleted slots are left out by the caller.
+    protected TaskStore.IntList overlapping(long from, long to){
+
+        if (!sorted){
+
+            sort();
+        }
+
+        // First position which starts after the range
+        int low = 0, high = size;
+        while (low < high){
+
+            int mid = (low + high) >>> 1;
+
+            if (store.getStart(order[mid]) < to){
+                low = mid + 1;
+            }else{
+                high = mid;
+            }
+        }
+
+        TaskStore.IntList closed = new TaskStore.IntList();
+
+        if (low > 0){
+
+            collect(1, 0, capacity, low, from, closed);
+        }
+
+        // Running windows overlap once they started before the range end
+        int[] open = new int[running.size()];
+        int count = 0;
+
+        for (int i = 0; i < running.size(); i++){
+
+            int slot = running.get(i);
+
+            if (store.isRunning(slot) && store.getStart(slot) < to){
+
+                open[count++] = slot;
+            }
+        }
+
+        // Only a few windows run at once
+        for (int i = 1; i < count; i++){
+
+            int slot = open[i];
+            int j = i - 1;
+
+            while (j >= 0 && position[open[j]] > position[slot]){
+
+                open[j + 1] = open[j];
+                j--;
+            }
+            open[j + 1] = slot;
+        }
+        return merge(closed, open, count);
+    }
+
+    // Closed windows below a node covering positions [begin, end),
+    // before limit and reaching from, in position order
+    private void collect(int node, int begin, int end, int limit, long from,
+                            TaskStore.IntList result){
+
+        // Running windows are only in the list, their leaves are NONE
+        if (begin >= limit || latest[node] == NONE || latest[node] < from){
+            return;
+        }
+
+        if (node >= capacity){
+
+            int slot = order[begin];
+
+            if (store.getStart(slot) >= from || store.getEnd(slot) > from){
+
+                result.add(slot);
+            }
+            return;
+        }
+
+        int middle = (begin + end) >>> 1;
+
+        collect(2 * node, begin, middle, limit, from, result);
+        collect(2 * node + 1, middle, end, limit, from, result);
+    }
+
+    // Both in position order
+    private TaskStore.IntList merge(TaskStore.IntList closed, int[] open, int count){
+
+        if (count == 0){
+
+            return closed;
+        }
+
+        TaskStore.IntList result = new TaskStore.IntList();
+        int i = 0, j = 0;
+
+        while (i < closed.size() || j < count){
+
+            if (j == count || (i < closed.size()
+                    && position[closed.get(i)] < position[open[j]])){
+
+                result.add(closed.get(i++));
+            }else{
+                result.add(open[j++]);
+            }
+        }
+        return result;
+    }
+
+    private long endOf(int slot){
+
+        return store.isRunning(slot) ? NONE : store.getEnd(slot);
+    }
+
+    // Leaf of a position and the nodes above it
+    private void set(int at, long end){
+
+        int node = capacity + at;
+        latest[node] = end;
+
+        for (node >>>= 1; node > 0; node >>>= 1){
+
+            latest[node] = Math.max(latest[2 * node], latest[2 * node + 1]);
+        }
+    }
+
+    // Tree of every position, large enough for the slots there are
+    private void build(){
+
+        while (capacity < size){
+
+            capacity *= 2;
+        }
+        latest = newTree(capacity);
+
+        for (int i = 0; i < size; i++){
+
+            latest[capacity + i] = endOf(order[i]);
+        }
+        for (int node = capacity - 1; node > 0; node--){
+
+            latest[node] = Math.max(latest[2 * node], latest[2 * node + 1]);
+        }
+    }
+
+    private static long[] newTree(int capacity){
+
+        long[] result = new long[2 * capacity];
+        Arrays.fill(result, NONE);
+        return result;
+    }
+
+    private void sort(){
+
+        Integer[] slots = new Integer[size];
+
+        for (int i = 0; i < size; i++){
+
+            slots[i] = order[i];
+        }
+        Arrays.sort(slots, (a, b) -> Long.compare(store.getStart(a), store.getStart(b)));
+
+        for (int i = 0; i < size; i++){
+
+            order[i] = slots[i];
+            position[order[i]] = i;
+        }
+        sorted = true;
+        build();
+    }
+}
@@ -0,0 +1,243 @@
+package TM;
+
+// Imports for files R/W
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+
+// Imports for data operations
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// Watch
+// summary --watch: the log is loaded once and the summary is printed
+// again every second, running windows tick from the loaded totals.
+// A WatchService on the log directory reports writes of other processes.
+// With a journal only the records appended since the last refresh are
+// read and replayed, anything else (a new snapshot, a checkpoint or
+// another layout) loads the log again. The log lock is only held while
+// reading, so other commands and the daemon keep writing.
+class Watch{
+
+    // Refresh interval without changes
+    private static final long TICK = 1000;
+
+    // Clear the terminal before every refresh
+    private static final String CLEAR = "\033[H\033[2J";
+
+    // Files whose changes are read
+    private static final Set<String> FILES = Set.of(Constants.LOG_FNAME,
+                                    Constants.BINARY_FNAME, Constants.JOURNAL_FNAME);
+
+    // Summary arguments without --watch
+    private final String[] args;
+
+    private final File journalFile;
+
+    private Logger logger;
+
+    // Why the last refresh failed, the log is read again on every tick
+    // until it works, null if it did
+    private String error;
+
+    // Log and journal as the loaded Logger has them
+    private String logStamp;
+    private long journalCheckpoint;
+    private long journalOffset;
+
+    private Watch(String[] args){
+
+        this.args = args;
+        this.journalFile = new File(Logger.logFile().getAbsoluteFile().getParentFile(),
+                                        Constants.JOURNAL_FNAME);
+    }
+
+    protected static boolean isWatch(String[] args){
+
+        return args[0].equalsIgnoreCase(Constants.SUMMARY)
+                && Arrays.asList(args).contains(Constants.WATCH);
+    }
+
+    // Print the summary until the process is stopped
+    @SuppressWarnings("try")
+    protected static void run(String[] args) throws Exception{
+
+        List<String> summary = new ArrayList<>(Arrays.asList(args));
+        summary.remove(Constants.WATCH);
+
+        Watch watch = new Watch(summary.toArray(new String[0]));
+        Path dir = Logger.logFile().getAbsoluteFile().getParentFile().toPath();
+
+        try (WatchService service = FileSystems.getDefault().newWatchService()){
+
+            dir.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_MODIFY,
+                                StandardWatchEventKinds.ENTRY_DELETE);
+
+            try (LogLock lock = LogLock.shared()){
+
+                watch.reload();
+            }
+
+            while (true){
+
+                watch.print();
+
+                WatchKey key = service.poll(TICK, TimeUnit.MILLISECONDS);
+
+                if ((key != null && changed(key)) || watch.error != null){
+
+                    try (LogLock lock = LogLock.shared()){
+
+                        watch.update();
+                        watch.error = null;
+
+                    }catch(IOException | RuntimeException ex){
+
+                        // E.g. a log being replaced, the last summary stays
+                        watch.error = ex.getMessage();
+                    }
+                }
+            }
+        }
+    }
+
+    // Events of the log, binary snapshot or journal since the last poll
+    private static boolean changed(WatchKey key){
+
+        boolean result = false;
+
+        for (WatchEvent<?> event : key.pollEvents()){
+
+            // Events were lost, read everything again
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                    || FILES.contains(event.context().toString())){
+
+                result = true;
+            }
+        }
+        key.reset();
+        return result;
+    }
+
+    private void print() throws IOException{
+
+        if (System.console() != null){
+
+            System.out.print(CLEAR);
+        }else{
+            System.out.println();
+        }
+        TM.summary(logger, args);
+
+        if (error != null){
+
+            System.out.println(error);
+        }
+        System.out.flush();
+    }
+
+    // Appended journal records if the snapshot is the same, else load again
+    @SuppressWarnings("try")
+    private void update() throws IOException{
+
+        if (!journalFile.exists() || !logStamp.equals(stamp(Logger.logFile()))
+                || journalFile.length() < journalOffset){
+
+            reload();
+            return;
+        }
+
+        List<String[]> records = new ArrayList<>();
+
+        try (Perf.Phase phase = Perf.phase(Perf.JOURNAL);
+                RandomAccessFile in = new RandomAccessFile(journalFile, "r")){
+
+            if (checkpoint(in) != journalCheckpoint){
+
+                reload();
+                return;
+            }
+
+            // Only whole lines, a torn one is cut by the next append
+            // and a line being written is read next time
+            long complete = Journal.complete(in.getChannel());
+
+            if (complete < journalOffset){
+
+                reload();
+                return;
+            }
+
+            byte[] bytes = new byte[(int) (complete - journalOffset)];
+            in.seek(journalOffset);
+            in.readFully(bytes);
+            Perf.read(bytes.length);
+
+            int begin = 0;
+
+            for (int i = 0; i < bytes.length; i++){
+
+                if (bytes[i] != '\n'){
+                    continue;
+                }
+
+                String line = new String(bytes, begin, i - begin, StandardCharsets.UTF_8);
+                begin = i + 1;
+
+                if (line.endsWith(Constants.JOURNAL_END)){
+
+                    records.add(Journal.decode(line.substring(0,
+                                    line.length() - Constants.JOURNAL_END.length())));
+                }
+            }
+            journalOffset = complete;
+        }
+        logger.replayJournal(records);
+    }
+
+    // Load the log, the lock is held so the journal doesn't change meanwhile
+    private void reload() throws IOException{
+
+        logger = Logger.refresh();
+        logStamp = stamp(Logger.logFile());
+        journalCheckpoint = -1;
+        journalOffset = 0;
+
+        if (journalFile.exists()){
+
+            try (RandomAccessFile in = new RandomAccessFile(journalFile, "r")){
+
+                journalCheckpoint = checkpoint(in);
+
+                // Journal.load skipped a torn last line, the next append cuts it
+                journalOffset = Journal.complete(in.getChannel());
+            }
+        }
+    }
+
+    // Checkpoint on the first line of the journal, -1 if it has none
+    private static long checkpoint(RandomAccessFile in) throws IOException{
+
+        String line = in.readLine();
+
+        return line == null ? -1 : Journal.readCheckpoint(line);
+    }
+
+    private static String stamp(File file) throws IOException{
+
+        return file.exists() ? file.length() + "/" + Files.getLastModifiedTime(file.toPath())
+                                : "";
+    }
+}
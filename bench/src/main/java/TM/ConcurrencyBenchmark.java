@@ -0,0 +1,169 @@
+package TM;
+
+// Imports for files R/W
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Imports for data operations
+import java.util.List;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Throughput of concurrent clients on one log
+// Every client starts and stops its own tasks, afterwards the log must
+// have every window: nothing may be lost to a concurrent rewrite.
+//   daemon:    clients send commands to one daemon, which group commits
+//   processes: every command is its own TM process, serialized by the lock
+// Build and run from the project root:
+//   mvn -B package
+//   java -cp bench/target/benchmarks.jar TM.ConcurrencyBenchmark [clients] [commands]
+public class ConcurrencyBenchmark{
+
+    public static void main(String[] args) throws Exception{
+
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        int commands = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        daemon(clients, commands);
+
+        // One JVM per command, keep this part short
+        processes(clients, Math.max(2, commands / 10));
+    }
+
+    private static void daemon(int clients, int commands) throws Exception{
+
+        File dir = Files.createTempDirectory("TM_clients").toFile();
+        Path socket = dir.toPath().resolve(Constants.SOCKET_FNAME);
+
+        Process daemon = tm(dir, Constants.DAEMON).start();
+
+        while (!Files.exists(socket)){
+
+            if (!daemon.isAlive()){
+
+                throw new IllegalStateException("Daemon exited with " + daemon.exitValue());
+            }
+            Thread.sleep(50);
+        }
+
+        long time = run(clients, client -> {
+
+            for (int i = 0; i < commands / 2; i++){
+
+                String name = "c" + client + "-" + i;
+
+                Daemon.forward(socket, new String[]{Constants.START, name},
+                                OutputStream.nullOutputStream());
+                Daemon.forward(socket, new String[]{Constants.STOP, name},
+                                OutputStream.nullOutputStream());
+            }
+            return null;
+        });
+
+        Daemon.forward(socket, new String[]{Constants.DAEMON, Constants.STOP},
+                        OutputStream.nullOutputStream());
+        daemon.waitFor();
+
+        report("daemon", clients, clients * (commands / 2) * 2, time,
+                    clients * (commands / 2), dir);
+    }
+
+    private static void processes(int clients, int commands) throws Exception{
+
+        File dir = Files.createTempDirectory("TM_clients").toFile();
+
+        long time = run(clients, client -> {
+
+            for (int i = 0; i < commands / 2; i++){
+
+                String name = "p" + client + "-" + i;
+
+                tm(dir, Constants.START, name).start().waitFor();
+                tm(dir, Constants.STOP, name).start().waitFor();
+            }
+            return null;
+        });
+
+        report("processes", clients, clients * (commands / 2) * 2, time,
+                    clients * (commands / 2), dir);
+    }
+
+    private interface Client{
+
+        Void run(int client) throws Exception;
+    }
+
+    // Every client on its own thread, returns the wall time in nanoseconds
+    private static long run(int clients, Client client) throws Exception{
+
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        List<Future<Void>> results = new ArrayList<>();
+
+        long begin = System.nanoTime();
+
+        for (int i = 0; i < clients; i++){
+
+            int id = i;
+            results.add(pool.submit(() -> client.run(id)));
+        }
+        for (Future<Void> result : results){
+
+            result.get();
+        }
+
+        long time = System.nanoTime() - begin;
+        pool.shutdown();
+        return time;
+    }
+
+    private static ProcessBuilder tm(File dir, String... args){
+
+        List<String> command = new ArrayList<>();
+        command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+        command.add("-cp");
+        command.add(classPath());
+        command.add("TM.TM");
+        command.addAll(List.of(args));
+
+        return new ProcessBuilder(command).directory(dir)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .redirectError(ProcessBuilder.Redirect.INHERIT);
+    }
+
+    // Class path of this JVM, absolute since TM runs in the log's directory
+    private static String classPath(){
+
+        List<String> paths = new ArrayList<>();
+
+        for (String path : System.getProperty("java.class.path").split(File.pathSeparator)){
+
+            paths.add(new File(path).getAbsolutePath());
+        }
+        return String.join(File.pathSeparator, paths);
+    }
+
+    private static void report(String mode, int clients, int commands, long time,
+                                int expected, File dir) throws IOException{
+
+        RecordParser parser = new RecordParser();
+        int windows = 0;
+
+        for (String line : Files.readAllLines(new File(dir, Constants.LOG_FNAME).toPath())){
+
+            if (parser.parse(line)){
+
+                windows++;
+            }
+        }
+
+        System.out.printf("%-10s %d clients, %d commands in %.2f s: %.1f commands/s, "
+                            + "%d of %d windows%n",
+                            mode, clients, commands, time / 1e9,
+                            commands / (time / 1e9), windows, expected);
+    }
+}
@@ -0,0 +1,102 @@
+package TM;
+
+// Imports for files R/W
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+// Imports for data operations
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Random;
+
+// Imports for store time value
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+// Synthetic TM_log.txt generator
+// The same seed always gives the same log, so benchmark runs can be compared.
+// Run from the project root:
+//   java -cp bench/target/benchmarks.jar TM.LogGenerator <windows> [names] [file]
+public class LogGenerator{
+
+    protected static final long SEED = 160;
+    protected static final int NAMES = 10_000;
+
+    public static void main(String[] args) throws IOException{
+
+        if (args.length == 0){
+
+            System.out.println("Usage: LogGenerator <windows> [names] [file]");
+            return;
+        }
+
+        int windows = Integer.parseInt(args[0]);
+        int names = args.length > 1 ? Integer.parseInt(args[1]) : NAMES;
+        File file = new File(args.length > 2 ? args[2] : Constants.LOG_FNAME);
+
+        write(file, windows, names);
+        System.out.println("Wrote " + windows + " windows to " + file);
+    }
+
+    // Task Summary rows, windows follow each other in time
+    // and only the last window of the log is still running
+    protected static List<String> rows(int windows, int names){
+
+        Random random = new Random(SEED);
+        TASK_SIZE[] sizes = TASK_SIZE.values();
+        ZonedDateTime time = ZonedDateTime.of(2015, 1, 1, 9, 0, 0, 0, ZoneId.systemDefault());
+
+        List<String> lines = new ArrayList<>(windows);
+
+        for (int i = 0; i < windows; i++){
+
+            ZonedDateTime start = time.plusSeconds(random.nextInt(3600));
+            ZonedDateTime end = i == windows - 1 ? Constants.MIN_TIME
+                                    : start.plusSeconds(random.nextInt(7200));
+            time = start;
+
+            Task task = new Task(name(random.nextInt(names)),
+                                    sizes[random.nextInt(sizes.length)],
+                                        start, end, Constants.UNDEFINED);
+            lines.add(task.printTask());
+        }
+        return lines;
+    }
+
+    protected static String name(int id){ return "task" + id; }
+
+    // Whole log file, one start and one stop operation per window
+    protected static void write(File file, int windows, int names) throws IOException{
+
+        List<String> lines = rows(windows, names);
+
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))){
+
+            writer.write(Constants.OP_LOG + "\n");
+            for (int i = 0; i < lines.size(); i++){
+
+                String line = lines.get(i);
+                String name = line.substring(0, Constants.PRINT_GAP);
+                String start = line.substring(Constants.PRINT_GAP * 2, Constants.PRINT_GAP * 3);
+                String end = line.substring(Constants.PRINT_GAP * 3, Constants.PRINT_GAP * 4);
+
+                writer.write(String.format(Constants.PRINT_FORMAT, Constants.START) + name + start + "\n");
+
+                // The last window is still running
+                if (i < lines.size() - 1){
+
+                    writer.write(String.format(Constants.PRINT_FORMAT, Constants.STOP) + name + end + "\n");
+                }
+            }
+            writer.write("\n");
+            writer.write(Constants.TASK_SUMMARY + "\n");
+            writer.write(Constants.LABEL + "\n");
+            for (String line : lines){
+
+                writer.write(line + "\n");
+            }
+        }
+    }
+}
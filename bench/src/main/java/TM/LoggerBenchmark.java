@@ -0,0 +1,207 @@
+package TM;
+
+// Imports for files R/W
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+
+// Imports for data operations
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Imports for JMH
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Logger hot paths at 1k, 100k and 1M windows
+// Every trial runs against a log written by LogGenerator.
+// Build and run from the project root:
+//   mvn -B package
+//   java -jar bench/target/benchmarks.jar LoggerBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class LoggerBenchmark{
+
+    @Param({"1000", "100000", "1000000"})
+    public int windows;
+
+    private File dir;
+    private File log;
+    private File binaryLog;
+    private File out;
+    private List<String> rows;
+
+    private Logger logger;
+    private TaskStore store;
+    private String[] names;
+    private int next = 0;
+
+    private PrintStream console;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException{
+
+        dir = Files.createTempDirectory("TM_bench").toFile();
+        log = new File(dir, Constants.LOG_FNAME);
+        out = new File(dir, "TM_out.txt");
+
+        LogGenerator.write(log, windows, LogGenerator.NAMES);
+        rows = LogGenerator.rows(windows, LogGenerator.NAMES);
+
+        logger = new Logger(log);
+        store = readTask();
+
+        binaryLog = new File(dir, Constants.BINARY_FNAME);
+        logger.printBinary(binaryLog);
+
+        List<String> loaded = store.names();
+
+        names = new String[1024];
+        for (int i = 0; i < names.length; i++){
+
+            names[i] = loaded.get(i % loaded.size());
+        }
+
+        // Summaries print every name, keep that out of the terminal
+        console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown(){
+
+        System.setOut(console);
+
+        for (File file : dir.listFiles()){
+
+            file.delete();
+        }
+        dir.delete();
+    }
+
+    // Whole log: Files.readAllLines, sections and every row
+    @Benchmark
+    public Logger readFile() throws IOException{
+
+        return new Logger(log);
+    }
+
+    // Whole binary snapshot: mapped, every record into a store
+    @Benchmark
+    public Logger readBinary() throws IOException{
+
+        return new Logger(binaryLog);
+    }
+
+    // Task Summary rows into a store
+    @Benchmark
+    public TaskStore readTask(){
+
+        RecordParser parser = new RecordParser();
+        TaskStore result = new TaskStore();
+
+        for (String row : rows){
+
+            parser.parse(row);
+            result.add(parser.name, parser.size, parser.start, parser.end, parser.des);
+        }
+        return result;
+    }
+
+    // Latest window of a name
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public int findTask(){
+
+        return store.find(names[next++ & (names.length - 1)]);
+    }
+
+    // Names starting with a prefix, the sorted names are built on the first call
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public int namesWithPrefix(){
+
+        String name = names[next++ & (names.length - 1)];
+
+        return store.namesWithPrefix(name.substring(0, name.length() - 1)).size();
+    }
+
+    // Full rewrite of the log
+    @Benchmark
+    public long printHelper() throws IOException{
+
+        logger.printHelper(out);
+        return out.length();
+    }
+
+    // Full rewrite of the binary snapshot
+    @Benchmark
+    public long printBinary() throws IOException{
+
+        logger.printBinary(out);
+        return out.length();
+    }
+
+    @Benchmark
+    public String computeStats(){
+
+        return logger.computeStats();
+    }
+
+    @Benchmark
+    public void summaryAll() throws IOException{
+
+        logger.summaryTask();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void summaryName() throws IOException{
+
+        logger.summaryTask(names[next++ & (names.length - 1)]);
+    }
+
+    @Benchmark
+    public void summarySize() throws IOException{
+
+        logger.summaryTask(TASK_SIZE.M);
+    }
+
+    // Ten names with the most time, bounded heap
+    @Benchmark
+    public void summaryTop() throws IOException{
+
+        logger.summaryTop(10, Constants.TOTAL, null, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    // Monthly report from the rollups, built on the first call
+    @Benchmark
+    public void reportMonth() throws IOException{
+
+        logger.report(Rollup.MONTH);
+    }
+
+    // Every name by time, full stable sort
+    @Benchmark
+    public void summarySort() throws IOException{
+
+        logger.summaryTop(0, Constants.TOTAL, null, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+}
@@ -0,0 +1,75 @@
+package TM;
+
+// Imports for data operations
+import java.util.List;
+import java.util.ArrayList;
+
+// Heap cost per time window
+// Compares the ArrayList<Task> the Logger used to keep with TaskStore.
+// Build and run from the project root:
+//   mvn -B package
+//   java -cp bench/target/benchmarks.jar TM.MemoryBenchmark [rows]
+public class MemoryBenchmark{
+
+    public static void main(String[] args){
+
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        List<String> lines = LogGenerator.rows(rows, LogGenerator.NAMES);
+
+        long base = usedHeap();
+        List<Task> tasks = loadTasks(lines);
+        long taskBytes = usedHeap() - base;
+
+        // Keep the list reachable until it was measured
+        System.out.println("Windows:         " + tasks.size());
+        tasks = null;
+
+        base = usedHeap();
+        TaskStore store = loadStore(lines);
+        long storeBytes = usedHeap() - base;
+
+        System.out.println("ArrayList<Task>: " + taskBytes / rows + " bytes/window");
+        System.out.println("TaskStore:       " + storeBytes / store.count() + " bytes/window");
+    }
+
+    // Same objects the old readTask created per row
+    private static List<Task> loadTasks(List<String> lines){
+
+        RecordParser parser = new RecordParser();
+        List<Task> tasks = new ArrayList<>();
+
+        for (String line : lines){
+
+            parser.parse(line);
+            tasks.add(new Task(parser.name, parser.size,
+                                parser.toTime(parser.start),
+                                    parser.toTime(parser.end), parser.des));
+        }
+        return tasks;
+    }
+
+    private static TaskStore loadStore(List<String> lines){
+
+        RecordParser parser = new RecordParser();
+        TaskStore store = new TaskStore();
+
+        for (String line : lines){
+
+            parser.parse(line);
+            store.add(parser.name, parser.size, parser.start, parser.end, parser.des);
+        }
+        return store;
+    }
+
+    private static long usedHeap(){
+
+        Runtime runtime = Runtime.getRuntime();
+
+        for (int i = 0; i < 3; i++){
+
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,94 @@
+package TM;
+
+// Imports for data operations
+import java.util.List;
+import java.util.ArrayList;
+
+// Imports for store time value
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+// Load time benchmark of Task Summary rows
+// Compares the old segment/regex/formatter readTask with RecordParser.
+// Build and run from the project root:
+//   mvn -B package
+//   java -cp bench/target/benchmarks.jar TM.ParseBenchmark [rows]
+public class ParseBenchmark{
+
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args){
+
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        List<String> lines = LogGenerator.rows(rows, LogGenerator.NAMES);
+
+        long legacy = Long.MAX_VALUE;
+        long parser = Long.MAX_VALUE;
+
+        for (int round = 0; round < ROUNDS; round++){
+
+            legacy = Math.min(legacy, time(() -> legacyLoad(lines)));
+            parser = Math.min(parser, time(() -> parserLoad(lines)));
+        }
+
+        System.out.println("Rows:            " + rows);
+        System.out.println("Legacy readTask: " + legacy / 1_000_000 + " ms");
+        System.out.println("RecordParser:    " + parser / 1_000_000 + " ms");
+        System.out.printf("Speedup:         %.1fx%n", (double) legacy / parser);
+    }
+
+    private static long time(Runnable load){
+
+        long begin = System.nanoTime();
+        load.run();
+        return System.nanoTime() - begin;
+    }
+
+    private static List<Task> parserLoad(List<String> lines){
+
+        RecordParser parser = new RecordParser();
+        List<Task> tasks = new ArrayList<>(lines.size());
+
+        for (String line : lines){
+
+            if (!parser.parse(line)){
+
+                throw new RuntimeException("Invalid task record: " + line);
+            }
+            tasks.add(new Task(parser.name, parser.size,
+                                parser.toTime(parser.start),
+                                    parser.toTime(parser.end), parser.des));
+        }
+        return tasks;
+    }
+
+    // readTask before RecordParser
+    private static List<Task> legacyLoad(List<String> lines){
+
+        List<Task> tasks = new ArrayList<>(lines.size());
+
+        for (String line : lines){
+
+            int len = line.length();
+
+            List<String> segments = new ArrayList<>();
+
+            for (int i = 0; i < len; i += Constants.PRINT_GAP){
+
+                int end = Math.min(i + Constants.PRINT_GAP, len);
+                segments.add(line.substring(i, end).replaceAll("\\s+$", ""));
+            }
+
+            ZonedDateTime startTime = ZonedDateTime.parse(segments.get(2),
+                                        Constants.FORMATTER.withZone(ZoneId.systemDefault()));
+            ZonedDateTime endTime = ZonedDateTime.parse(segments.get(3),
+                                        Constants.FORMATTER.withZone(ZoneId.systemDefault()));
+
+            tasks.add(new Task(segments.get(0),
+                                TASK_SIZE.valueOf(segments.get(1)),
+                                    startTime, endTime, segments.get(4)));
+        }
+        return tasks;
+    }
+}